@@ -0,0 +1,200 @@
+package cmanager.gpx;
+
+import cmanager.exception.MalFormedException;
+import cmanager.geo.Geocache;
+import cmanager.geo.Waypoint;
+import cmanager.gui.ExceptionPanel;
+import cmanager.xml.PullParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load large GPX streams by binding batches of <code>wpt</code> elements concurrently.
+ *
+ * <p>The calling thread reads the stream and checks the document structure like the sequential
+ * parser, but only scans the <code>wpt</code> elements for their boundaries and copies them into
+ * batches. The batches are deserialized by a thread pool into private lists. To limit the memory
+ * usage, only a bounded number of batches is pending at any time. The results are merged on the
+ * calling thread in document order.
+ */
+class BatchedGpxLoader {
+
+    /** The number of characters after which a batch is handed over to the thread pool. */
+    static final int BATCH_SIZE = 1024 * 1024;
+
+    /**
+     * Load the given GPX stream using the given number of threads.
+     *
+     * @param inputStream The stream with the GPX input data.
+     * @param threadCount The number of threads to bind the batches with.
+     * @param geocaches The list of geocaches to add the read geocaches to.
+     * @param waypoints The list of waypoints to add the read waypoints to.
+     * @param fields The optional fields to load.
+     * @throws Throwable The data is malformed or could not be read.
+     */
+    static void load(
+            final InputStream inputStream,
+            final int threadCount,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints,
+            final Set<GpxField> fields)
+            throws Throwable {
+        final int maximumPending = threadCount * 2;
+        final ExecutorService service = Executors.newFixedThreadPool(threadCount);
+        final Deque<Future<Batch>> pending = new ArrayDeque<>(maximumPending);
+
+        try {
+            final BatchReader reader =
+                    new BatchReader(new PullParser(inputStream)) {
+                        @Override
+                        void submit(final Batch batch) throws MalFormedException, IOException {
+                            if (pending.size() == maximumPending) {
+                                mergeNext(pending, geocaches, waypoints);
+                            }
+                            pending.add(service.submit(() -> batch.bind(fields)));
+                        }
+                    };
+            reader.bind();
+            reader.flush();
+
+            while (!pending.isEmpty()) {
+                mergeNext(pending, geocaches, waypoints);
+            }
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for the oldest pending batch and merge its results.
+     *
+     * @param pending The pending batches, in document order.
+     * @param geocaches The list of geocaches to add the geocaches of the batch to.
+     * @param waypoints The list of waypoints to add the waypoints of the batch to.
+     * @throws MalFormedException The batch is malformed.
+     * @throws IOException Something went wrong while reading the batch.
+     */
+    private static void mergeNext(
+            final Deque<Future<Batch>> pending,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints)
+            throws MalFormedException, IOException {
+        final Batch batch;
+        try {
+            batch = pending.removeFirst().get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException(exception);
+        } catch (ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof MalFormedException) {
+                throw (MalFormedException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+
+        geocaches.addAll(batch.geocaches);
+        waypoints.addAll(batch.waypoints);
+        for (final Exception exception : batch.errors) {
+            ExceptionPanel.display(exception);
+        }
+    }
+
+    /**
+     * Reader checking the document structure and copying the <code>wpt</code> elements into
+     * batches instead of deserializing them.
+     */
+    private abstract static class BatchReader extends GpxBinder {
+
+        /** The parser to get the events from. */
+        private final PullParser parser;
+
+        /** The batch to copy the next <code>wpt</code> elements to. */
+        private Batch batch = new Batch();
+
+        /**
+         * Create a new instance for the given parser.
+         *
+         * @param parser The parser to get the events from.
+         */
+        BatchReader(final PullParser parser) {
+            super(parser, new ArrayList<>(), new ArrayList<>());
+            this.parser = parser;
+        }
+
+        @Override
+        void bindWaypoint() throws MalFormedException, IOException {
+            parser.copyElement(batch.data);
+            if (batch.data.length() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Hand over the current batch, if it is not empty.
+         *
+         * @throws MalFormedException A previous batch is malformed.
+         * @throws IOException Something went wrong while reading a previous batch.
+         */
+        void flush() throws MalFormedException, IOException {
+            if (batch.data.length() > 0) {
+                submit(batch);
+                batch = new Batch();
+            }
+        }
+
+        /**
+         * Hand over the given batch to be deserialized.
+         *
+         * @param batch The batch to deserialize.
+         * @throws MalFormedException A previous batch is malformed.
+         * @throws IOException Something went wrong while reading a previous batch.
+         */
+        abstract void submit(Batch batch) throws MalFormedException, IOException;
+    }
+
+    /** A batch of <code>wpt</code> elements and the results of deserializing them. */
+    private static class Batch {
+
+        /** The copied <code>wpt</code> elements or <code>null</code> after deserializing them. */
+        private StringBuilder data = new StringBuilder();
+
+        /** The deserialized geocaches. */
+        private final List<Geocache> geocaches = new ArrayList<>();
+
+        /** The deserialized waypoints. */
+        private final List<Waypoint> waypoints = new ArrayList<>();
+
+        /** The errors of single elements. */
+        private List<Exception> errors;
+
+        /**
+         * Deserialize the copied <code>wpt</code> elements.
+         *
+         * @param fields The optional fields to load.
+         * @return The current batch.
+         * @throws MalFormedException The copied data is malformed.
+         * @throws IOException Something went wrong while reading the copied data.
+         */
+        Batch bind(final Set<GpxField> fields) throws MalFormedException, IOException {
+            final GpxBinder binder =
+                    new GpxBinder(new PullParser(data.toString()), geocaches, waypoints, fields);
+            data = null;
+            errors = binder.deferErrors();
+            binder.bindFragment();
+            return this;
+        }
+    }
+}
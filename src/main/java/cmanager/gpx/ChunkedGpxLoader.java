@@ -0,0 +1,275 @@
+package cmanager.gpx;
+
+import cmanager.exception.MalFormedException;
+import cmanager.geo.Geocache;
+import cmanager.geo.Waypoint;
+import cmanager.gui.ExceptionPanel;
+import cmanager.util.ThreadStore;
+import cmanager.xml.PullParser;
+import cmanager.xml.XmlEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Load large GPX files by parsing multiple chunks of <code>wpt</code> elements concurrently.
+ *
+ * <p>The chunk boundaries are determined speculatively by searching for <code>&lt;wpt</code> on
+ * the raw bytes. If the data does not have the expected structure, for example because such a
+ * boundary is located inside a comment, parsing one of the chunks fails and the caller has to fall
+ * back to the sequential parser. This makes sure that the results are always identical to the
+ * sequential parser. Errors of single elements are only displayed once all chunks have been
+ * loaded successfully.
+ */
+class ChunkedGpxLoader {
+
+    /** The minimum number of bytes per chunk for parallel parsing to be worth it. */
+    static final int MINIMUM_CHUNK_SIZE = 2 * 1024 * 1024;
+
+    /** The start of a <code>wpt</code> element. */
+    private static final byte[] WAYPOINT_START = "<wpt".getBytes(StandardCharsets.US_ASCII);
+
+    /** The start of the end tag of a <code>wpt</code> element. */
+    private static final byte[] WAYPOINT_END = "</wpt".getBytes(StandardCharsets.US_ASCII);
+
+    /** The empty <code>wpt</code> element to check the position of the chunks with. */
+    private static final byte[] WAYPOINT_MARKER = "<wpt/>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Load the given UTF-8 encoded GPX data using the given number of chunks.
+     *
+     * <p>The given lists are only modified if the data could be loaded completely.
+     *
+     * @param byteBuffer The data to load, starting at the current position of the buffer.
+     * @param chunkCount The number of chunks to split the data into.
+     * @param geocaches The list of geocaches to add the read geocaches to.
+     * @param waypoints The list of waypoints to add the read waypoints to.
+     * @param fields The optional fields to load.
+     * @return Whether the data could be loaded. If this is <code>false</code>, the data has to be
+     *     loaded sequentially.
+     * @throws Throwable Something went wrong when waiting for the threads.
+     */
+    static boolean load(
+            final ByteBuffer byteBuffer,
+            final int chunkCount,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints,
+            final Set<GpxField> fields)
+            throws Throwable {
+        final int start = byteBuffer.position();
+        final int end = byteBuffer.limit();
+
+        // Determine the range of the `wpt` elements.
+        final int first = indexOfWaypoint(byteBuffer, start, end);
+        final int last = endOfLastWaypoint(byteBuffer, first, end);
+        if (first == -1 || last == -1 || !isWaypointPosition(byteBuffer, first, last)) {
+            return false;
+        }
+
+        // Split the range at the start of `wpt` elements.
+        final List<Integer> boundaries = new ArrayList<>(chunkCount + 1);
+        boundaries.add(first);
+        for (int i = 1; i < chunkCount; i++) {
+            final int target = (int) (first + (long) (last - first) * i / chunkCount);
+            final int boundary = indexOfWaypoint(byteBuffer, target, last);
+            if (boundary == -1) {
+                break;
+            }
+            if (boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(last);
+
+        // Parse the chunks concurrently.
+        final int chunks = boundaries.size() - 1;
+        final List<List<Geocache>> chunkGeocaches = new ArrayList<>(chunks);
+        final List<List<Waypoint>> chunkWaypoints = new ArrayList<>(chunks);
+        final List<List<Exception>> chunkErrors = new ArrayList<>(chunks);
+        final ThreadStore threadStore = new ThreadStore();
+        for (int i = 0; i < chunks; i++) {
+            final List<Geocache> geocacheList = new ArrayList<>();
+            final List<Waypoint> waypointList = new ArrayList<>();
+            chunkGeocaches.add(geocacheList);
+            chunkWaypoints.add(waypointList);
+
+            final ByteBuffer chunk = byteBuffer.duplicate();
+            chunk.limit(boundaries.get(i + 1));
+            chunk.position(boundaries.get(i));
+            final GpxBinder binder =
+                    new GpxBinder(new PullParser(chunk), geocacheList, waypointList, fields);
+            chunkErrors.add(binder.deferErrors());
+            threadStore.addAndRun(
+                    new Thread(
+                            () -> {
+                                try {
+                                    binder.bindFragment();
+                                } catch (MalFormedException | IOException exception) {
+                                    throw new IllegalStateException(exception);
+                                }
+                            }));
+        }
+
+        try {
+            threadStore.joinAndThrow();
+        } catch (Exception exception) {
+            // The speculative split did not work out.
+            return false;
+        }
+
+        // Merge the results in document order.
+        for (int i = 0; i < chunks; i++) {
+            geocaches.addAll(chunkGeocaches.get(i));
+            waypoints.addAll(chunkWaypoints.get(i));
+            for (final Exception exception : chunkErrors.get(i)) {
+                ExceptionPanel.display(exception);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the next start tag of a <code>wpt</code> element.
+     *
+     * @param byteBuffer The data to search in.
+     * @param from The absolute index to start searching at.
+     * @param to The absolute index to stop searching at.
+     * @return The absolute index of the start tag or <code>-1</code> if there is none.
+     */
+    private static int indexOfWaypoint(final ByteBuffer byteBuffer, final int from, final int to) {
+        for (int i = from; i + WAYPOINT_START.length < to; i++) {
+            if (matches(byteBuffer, i, WAYPOINT_START)
+                    && isEndOfName(byteBuffer.get(i + WAYPOINT_START.length))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the end of the last end tag of a <code>wpt</code> element.
+     *
+     * @param byteBuffer The data to search in.
+     * @param from The absolute index to stop searching at.
+     * @param to The absolute index to start searching backwards at.
+     * @return The absolute index after the end tag or <code>-1</code> if there is none.
+     */
+    private static int endOfLastWaypoint(
+            final ByteBuffer byteBuffer, final int from, final int to) {
+        if (from == -1) {
+            return -1;
+        }
+
+        for (int i = to - WAYPOINT_END.length; i >= from; i--) {
+            if (!matches(byteBuffer, i, WAYPOINT_END)) {
+                continue;
+            }
+
+            // Allow delimiters before the closing `>`.
+            int end = i + WAYPOINT_END.length;
+            while (end < to && isDelimiter(byteBuffer.get(end))) {
+                end++;
+            }
+            if (end < to && byteBuffer.get(end) == '>') {
+                return end + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check that the given range contains the <code>wpt</code> elements of the root element.
+     *
+     * <p>For this, the range is replaced by a single empty <code>wpt</code> element, which has to
+     * be the only <code>wpt</code> element and a direct child of the <code>gpx</code> root.
+     *
+     * @param byteBuffer The complete data.
+     * @param first The absolute index of the first <code>wpt</code> element.
+     * @param last The absolute index after the last <code>wpt</code> element.
+     * @return Whether the range is located directly inside the <code>gpx</code> root.
+     */
+    private static boolean isWaypointPosition(
+            final ByteBuffer byteBuffer, final int first, final int last) {
+        final int start = byteBuffer.position();
+        final int end = byteBuffer.limit();
+        final ByteBuffer document =
+                ByteBuffer.allocate(first - start + WAYPOINT_MARKER.length + end - last);
+        final ByteBuffer source = byteBuffer.duplicate();
+        source.limit(first);
+        document.put(source);
+        document.put(WAYPOINT_MARKER);
+        source.limit(end);
+        source.position(last);
+        document.put(source);
+        document.flip();
+
+        try {
+            final PullParser parser = new PullParser(document);
+            String root = null;
+            int waypointCount = 0;
+            boolean validPosition = false;
+
+            XmlEvent event;
+            while ((event = parser.next()) != XmlEvent.END_DOCUMENT) {
+                if (event != XmlEvent.START_ELEMENT) {
+                    continue;
+                }
+
+                final GpxTag tag = GpxTag.of(parser.getName());
+                if (parser.getDepth() == 1) {
+                    root = parser.getName();
+                } else if (tag == GpxTag.GPX) {
+                    return false;
+                }
+                if (tag == GpxTag.WPT) {
+                    waypointCount++;
+                    validPosition = parser.getDepth() == 2 && GpxTag.of(root) == GpxTag.GPX;
+                }
+            }
+            return waypointCount == 1 && validPosition;
+        } catch (MalFormedException | IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the given bytes are found at the given position.
+     *
+     * @param byteBuffer The data to check.
+     * @param index The absolute index to check at.
+     * @param bytes The bytes to compare with.
+     * @return Whether the bytes are found at the given position.
+     */
+    private static boolean matches(
+            final ByteBuffer byteBuffer, final int index, final byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (byteBuffer.get(index + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the given byte terminates a tag name.
+     *
+     * @param value The byte to check.
+     * @return Whether the byte is a delimiter, <code>&gt;</code> or <code>/</code>.
+     */
+    private static boolean isEndOfName(final byte value) {
+        return isDelimiter(value) || value == '>' || value == '/';
+    }
+
+    /**
+     * Check whether the given byte is a delimiter.
+     *
+     * @param value The byte to check.
+     * @return Whether the byte is a whitespace, newline or tab character.
+     */
+    private static boolean isDelimiter(final byte value) {
+        return value == ' ' || value == '\n' || value == '\t' || value == '\r';
+    }
+}
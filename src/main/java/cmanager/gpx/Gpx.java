@@ -2,29 +2,38 @@ package cmanager.gpx;
 
 import cmanager.geo.Geocache;
 import cmanager.geo.Waypoint;
-import cmanager.global.Constants;
-import cmanager.global.Version;
+import cmanager.util.CompressionProfile;
 import cmanager.util.FileHelper;
-import cmanager.xml.Element;
-import cmanager.xml.Parser;
-import cmanager.xml.XmlAttribute;
+import cmanager.util.ThreadStore;
+import cmanager.util.ZipArchiveReader;
+import cmanager.util.ZipArchiveWriter;
+import cmanager.util.ZipArchiveWriter.CompressedEntry;
+import cmanager.xml.PullParser;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
 
 /** Collection of methods for handling GPX files. */
 public class Gpx {
 
     /** The number of geocaches to write into each GPX file. */
-    private static final int CACHES_PER_GPX = 1000;
+    public static final int CACHES_PER_GPX = 1000;
 
     /**
      * Load the GPX file data from the given stream input the given lists.
@@ -32,23 +41,127 @@ public class Gpx {
      * @param inputStream The stream with the GPX input data.
      * @param geocaches The list of geocaches to add the read geocaches to.
      * @param waypoints The list of waypoints to add the read waypoints to.
-     * @throws IllegalArgumentException Something went wrong when determining the number of threads
-     *     to use.
      * @throws MalFormedException The given GPX file is not a valid XML file.
      * @throws IOException Something went wrong while reading the data.
      */
     public static void loadFromStream(
             InputStream inputStream, final List<Geocache> geocaches, final List<Waypoint> waypoints)
             throws Throwable {
-        final ExecutorService service =
-                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        loadFromStream(inputStream, geocaches, waypoints, GpxField.all());
+    }
+
+    /**
+     * Load the given fields of the GPX file data from the given stream input the given lists.
+     *
+     * <p>The elements of the excluded fields are skipped without decoding their content. The
+     * corresponding values of the geocaches are not set.
+     *
+     * @param inputStream The stream with the GPX input data.
+     * @param geocaches The list of geocaches to add the read geocaches to.
+     * @param waypoints The list of waypoints to add the read waypoints to.
+     * @param fields The optional fields to load.
+     * @throws MalFormedException The given GPX file is not a valid XML file.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    public static void loadFromStream(
+            final InputStream inputStream,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints,
+            final Set<GpxField> fields)
+            throws Throwable {
+        new GpxBinder(new PullParser(inputStream), geocaches, waypoints, fields).bind();
+    }
+
+    /**
+     * Load the GPX file data from the given stream input the given lists using multiple threads.
+     *
+     * <p>The <code>wpt</code> elements are handed over from the calling thread to a thread pool in
+     * batches, with only a bounded number of batches being pending. This is meant for single large
+     * streams, for example GZIP files, and should not be used if multiple streams are loaded
+     * concurrently already.
+     *
+     * @param inputStream The stream with the GPX input data.
+     * @param geocaches The list of geocaches to add the read geocaches to.
+     * @param waypoints The list of waypoints to add the read waypoints to.
+     * @throws MalFormedException The given GPX file is not a valid XML file.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    public static void loadFromStreamConcurrently(
+            final InputStream inputStream,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints)
+            throws Throwable {
+        final int threadCount = new ThreadStore().getCores(Integer.MAX_VALUE);
+        if (threadCount > 1) {
+            BatchedGpxLoader.load(inputStream, threadCount, geocaches, waypoints, GpxField.all());
+        } else {
+            loadFromStream(inputStream, geocaches, waypoints);
+        }
+    }
 
-        Parser.parse(inputStream, new GpxParserCallback(service, geocaches, waypoints) {});
+    /**
+     * Load the GPX file data from the given buffer input the given lists.
+     *
+     * <p>The data has to be UTF-8 encoded. It is parsed on the raw bytes without decoding the
+     * complete data, which makes this the preferred variant for memory-mapped files. Large files
+     * are split into chunks of <code>wpt</code> elements which are parsed concurrently.
+     *
+     * @param byteBuffer The buffer with the GPX input data.
+     * @param geocaches The list of geocaches to add the read geocaches to.
+     * @param waypoints The list of waypoints to add the read waypoints to.
+     * @throws MalFormedException The given GPX file is not a valid XML file.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    public static void loadFromBuffer(
+            final ByteBuffer byteBuffer,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints)
+            throws Throwable {
+        loadFromBuffer(byteBuffer, geocaches, waypoints, GpxField.all());
+    }
 
-        service.shutdown();
+    /**
+     * Load the given fields of the GPX file data from the given buffer input the given lists.
+     *
+     * <p>This works like {@link #loadFromBuffer(ByteBuffer, List, List)}, but skips the elements
+     * of the excluded fields without decoding their content.
+     *
+     * @param byteBuffer The buffer with the GPX input data.
+     * @param geocaches The list of geocaches to add the read geocaches to.
+     * @param waypoints The list of waypoints to add the read waypoints to.
+     * @param fields The optional fields to load.
+     * @throws MalFormedException The given GPX file is not a valid XML file.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    public static void loadFromBuffer(
+            final ByteBuffer byteBuffer,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints,
+            final Set<GpxField> fields)
+            throws Throwable {
+        final int chunkCount =
+                new ThreadStore()
+                        .getCores(byteBuffer.remaining() / ChunkedGpxLoader.MINIMUM_CHUNK_SIZE);
+        if (chunkCount > 1
+                && ChunkedGpxLoader.load(byteBuffer, chunkCount, geocaches, waypoints, fields)) {
+            return;
+        }
 
-        // Incredible high delay but still ugly.
-        service.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        new GpxBinder(new PullParser(byteBuffer), geocaches, waypoints, fields).bind();
+    }
+
+    /**
+     * Save the given geocache list to the given GPX file using the default compression.
+     *
+     * @param list The list of geocaches to write to the file.
+     * @param listName The name of the geocache list.
+     * @param pathToGpx The path to the GPX file to write to.
+     * @throws Throwable Something went wrong while writing the data.
+     */
+    public static void saveToFile(
+            final List<Geocache> list, final String listName, final String pathToGpx)
+            throws Throwable {
+        saveToFile(list, listName, pathToGpx, CompressionProfile.DEFAULT);
     }
 
     /**
@@ -57,98 +170,181 @@ public class Gpx {
      * @param list The list of geocaches to write to the file.
      * @param listName The name of the geocache list.
      * @param pathToGpx The path to the GPX file to write to.
+     * @param profile The compression profile to use.
      * @throws Throwable Something went wrong while writing the data.
      */
     public static void saveToFile(
-            final List<Geocache> list, String listName, final String pathToGpx) throws Throwable {
-        // The output will be a ZIP file containing multiple GPX files.
-        OutputStream outputStream = FileHelper.openFileWrite(pathToGpx);
-        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
-        zipOutputStream.setLevel(7);
-
-        // Strip an optional `.zip` extension from the list name.
-        if (FileHelper.getFileExtension(listName).equals("zip")) {
-            listName = listName.substring(0, listName.length() - 4);
-        }
+            final List<Geocache> list,
+            final String listName,
+            final String pathToGpx,
+            final CompressionProfile profile)
+            throws Throwable {
+        saveToFile(list, listName, pathToGpx, profile, index -> false);
+    }
+
+    /**
+     * Save the given geocache list to the given GPX file.
+     *
+     * <p>The output is a ZIP file containing one GPX file per {@link #CACHES_PER_GPX} geocaches.
+     * These GPX files are serialized and compressed concurrently on the common fork/join pool,
+     * while only a bounded number of them is kept in memory before being written in order.
+     *
+     * <p>The GPX files of sub-lists which are reported as unchanged are copied from the existing
+     * file without compressing them again, if available. The data is written to a temporary file
+     * first, which replaces the existing file at the end.
+     *
+     * @param list The list of geocaches to write to the file.
+     * @param listName The name of the geocache list.
+     * @param pathToGpx The path to the GPX file to write to.
+     * @param profile The compression profile to use.
+     * @param isUnchanged Whether the sub-list with the given index is unchanged in comparison to
+     *     the existing file.
+     * @throws Throwable Something went wrong while writing the data.
+     */
+    public static void saveToFile(
+            final List<Geocache> list,
+            final String listName,
+            final String pathToGpx,
+            final CompressionProfile profile,
+            final IntPredicate isUnchanged)
+            throws Throwable {
+        final String name = getBaseName(listName);
+        final List<String> entryNames = getEntryNames(listName, list.size());
+        final int subListCount = entryNames.size();
+        // The GPX files are compressed on the common pool, so saving does not start new threads.
+        final int maximumPending = new ThreadStore().getCores(subListCount) * 2;
+        final Deque<Future<CompressedEntry>> pending = new ArrayDeque<>(maximumPending);
+
+        final Path target = Paths.get(pathToGpx).toAbsolutePath();
+        final Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (ZipArchiveReader previous = openPrevious(target, subListCount, isUnchanged);
+                    ZipArchiveWriter zipArchiveWriter =
+                            new ZipArchiveWriter(FileHelper.openFileWrite(temporary.toString()))) {
+                for (int subListNumber = 1; subListNumber <= subListCount; subListNumber++) {
+                    final String subListFileName = entryNames.get(subListNumber - 1);
 
-        int subListNumber = 0;
-        int baseIndex = 0;
-        final boolean useSingleFile = list.size() <= CACHES_PER_GPX;
-        do {
-            final List<Geocache> subList = new ArrayList<>(CACHES_PER_GPX);
-
-            // Create the sub-list with not more than `CACHES_PER_GPX` geocaches.
-            for (int index = 0;
-                    index < CACHES_PER_GPX && index + baseIndex < list.size();
-                    index++) {
-                subList.add(list.get(index + baseIndex));
+                    if (pending.size() == maximumPending) {
+                        writeNext(pending, zipArchiveWriter);
+                    }
+
+                    // Copy unchanged sub-lists as they are.
+                    final CompressedEntry unchangedEntry =
+                            previous != null && isUnchanged.test(subListNumber - 1)
+                                    ? previous.read(subListFileName)
+                                    : null;
+                    if (unchangedEntry != null) {
+                        pending.add(CompletableFuture.completedFuture(unchangedEntry));
+                        continue;
+                    }
+
+                    // Create the sub-list with not more than `CACHES_PER_GPX` geocaches.
+                    final int baseIndex = (subListNumber - 1) * CACHES_PER_GPX;
+                    final List<Geocache> subList =
+                            new ArrayList<>(
+                                    list.subList(
+                                            baseIndex,
+                                            Math.min(baseIndex + CACHES_PER_GPX, list.size())));
+
+                    final Callable<CompressedEntry> task =
+                            () ->
+                                    ZipArchiveWriter.compress(
+                                            subListFileName,
+                                            profile,
+                                            outputStream ->
+                                                    new GpxWriter(outputStream)
+                                                            .write(subList, name));
+                    pending.add(ForkJoinPool.commonPool().submit(task));
+                }
+
+                while (!pending.isEmpty()) {
+                    writeNext(pending, zipArchiveWriter);
+                }
             }
-            baseIndex += CACHES_PER_GPX;
-            subListNumber += 1;
 
-            // Determine the name of the sub-list file, then add this file to the ZIP file.
-            final String subListFileName =
-                    useSingleFile ? listName : listName + "-" + subListNumber + ".gpx";
-            zipOutputStream.putNextEntry(new ZipEntry(subListFileName));
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // Drop the remaining tasks after a failure.
+            for (final Future<CompressedEntry> future : pending) {
+                future.cancel(true);
+            }
+            Files.deleteIfExists(temporary);
+        }
+    }
 
-            final Element root = cacheListToXml(subList, listName);
-            Parser.xmlToBuffer(root, zipOutputStream);
+    /**
+     * Get the names of the GPX files inside the ZIP file when saving a list.
+     *
+     * @param listName The name of the geocache list.
+     * @param geocacheCount The number of geocaches of the list.
+     * @return The names of the GPX files, one for each {@link #CACHES_PER_GPX} geocaches.
+     */
+    public static List<String> getEntryNames(final String listName, final int geocacheCount) {
+        final String name = getBaseName(listName);
+        final int subListCount = Math.max(1, (geocacheCount + CACHES_PER_GPX - 1) / CACHES_PER_GPX);
+        if (subListCount == 1) {
+            return Collections.singletonList(name);
+        }
 
-            zipOutputStream.closeEntry();
-        } while (baseIndex < list.size());
+        final List<String> entryNames = new ArrayList<>(subListCount);
+        for (int subListNumber = 1; subListNumber <= subListCount; subListNumber++) {
+            entryNames.add(name + "-" + subListNumber + ".gpx");
+        }
+        return entryNames;
+    }
 
-        zipOutputStream.close();
-        outputStream.close();
+    /**
+     * Strip an optional <code>.zip</code> extension from the given list name.
+     *
+     * @param listName The name of the geocache list.
+     * @return The name to use inside the ZIP file.
+     */
+    private static String getBaseName(final String listName) {
+        return FileHelper.getFileExtension(listName).equals("zip")
+                ? listName.substring(0, listName.length() - 4)
+                : listName;
     }
 
     /**
-     * Serialize the given geocache list to a GPX/XML structure.
+     * Open the existing file to copy unchanged sub-lists from.
      *
-     * @param list The list of geocaches to serialize.
-     * @param name The name of the geocache list.
+     * @param path The path to the existing file.
+     * @param subListCount The number of sub-lists to write.
+     * @param isUnchanged Whether the sub-list with the given index is unchanged.
+     * @return The opened file, or <code>null</code> if there are no unchanged sub-lists or the file
+     *     cannot be read.
      */
-    private static Element cacheListToXml(final List<Geocache> list, final String name) {
-        final Element root = new Element();
-
-        // Basic structure, schemes and namespaces.
-        final Element gpx = new Element("gpx");
-        gpx.add(new XmlAttribute("version", "1.0"));
-        gpx.add(new XmlAttribute("creator", Constants.APP_NAME));
-        gpx.add(
-                new XmlAttribute(
-                        "xsi:schemaLocation",
-                        "http://www.topografix.com/GPX/1/0 http://www.topografix.com/GPX/1/0/gpx.xsd http://www.groundspeak.com/cache/1/0/1 http://www.groundspeak.com/cache/1/0/1/cache.xsd http://www.gsak.net/xmlv1/6 http://www.gsak.net/xmlv1/6/gsak.xsd"));
-        gpx.add(new XmlAttribute("xmlns", "http://www.topografix.com/GPX/1/0"));
-        gpx.add(new XmlAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance"));
-        gpx.add(new XmlAttribute("xmlns:groundspeak", "http://www.groundspeak.com/cache/1/0/1"));
-        gpx.add(new XmlAttribute("xmlns:gsak", "http://www.gsak.net/xmlv1/6"));
-        gpx.add(new XmlAttribute("xmlns:cgeo", "http://www.cgeo.org/wptext/1/0"));
-        root.add(gpx);
-
-        // Add some metadata.
-        gpx.add(new Element("name", name));
-        gpx.add(
-                new Element(
-                        "desc",
-                        "Geocache file generated by "
-                                + Constants.APP_NAME
-                                + " "
-                                + Version.VERSION));
-        gpx.add(new Element("author", Constants.APP_NAME));
-
-        // Add the current timestamp.
-        final ZonedDateTime dateTime = ZonedDateTime.now();
-        final String dateString = dateTime.format(DateTimeFormatter.ISO_INSTANT);
-        gpx.add(new Element("time", dateString));
-
-        // Add the geocaches.
-        for (final Geocache geocache : list) {
-            gpx.add(GpxElementUtil.cacheToXml(geocache));
-            for (final Waypoint waypoint : geocache.getWaypoints()) {
-                gpx.add(GpxElementUtil.waypointToXml(waypoint));
+    private static ZipArchiveReader openPrevious(
+            final Path path, final int subListCount, final IntPredicate isUnchanged) {
+        for (int index = 0; index < subListCount; index++) {
+            if (isUnchanged.test(index)) {
+                try {
+                    return new ZipArchiveReader(path);
+                } catch (IOException exception) {
+                    // Write all sub-lists from scratch.
+                    return null;
+                }
             }
         }
+        return null;
+    }
 
-        return root;
+    /**
+     * Wait for the oldest pending GPX file and add it to the ZIP file.
+     *
+     * @param pending The pending GPX files, in the order of the sub-lists.
+     * @param zipArchiveWriter The ZIP file to write to.
+     * @throws Throwable Serializing or writing the data failed.
+     */
+    private static void writeNext(
+            final Deque<Future<CompressedEntry>> pending, final ZipArchiveWriter zipArchiveWriter)
+            throws Throwable {
+        final CompressedEntry entry;
+        try {
+            entry = pending.removeFirst().get();
+        } catch (ExecutionException exception) {
+            throw exception.getCause();
+        }
+        zipArchiveWriter.write(entry);
     }
 }
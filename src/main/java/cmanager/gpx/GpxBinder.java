@@ -0,0 +1,677 @@
+package cmanager.gpx;
+
+import cmanager.exception.MalFormedException;
+import cmanager.geo.Coordinate;
+import cmanager.geo.Geocache;
+import cmanager.geo.GeocacheAttribute;
+import cmanager.geo.GeocacheLog;
+import cmanager.geo.Waypoint;
+import cmanager.gui.ExceptionPanel;
+import cmanager.xml.PullParser;
+import cmanager.xml.XmlEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deserialize geocaches and waypoints directly from the events of the GPX parser.
+ *
+ * <p>This binds the values of each <code>wpt</code> element while reading it, without building
+ * an element tree first. Unknown elements and the elements of excluded fields are skipped.
+ */
+class GpxBinder {
+
+    /** The parser to get the events from. */
+    private final PullParser parser;
+
+    /** The list of deserialized geocache instances. */
+    private final List<Geocache> geocaches;
+
+    /** The list of deserialized waypoints. */
+    private final List<Waypoint> waypoints;
+
+    /** Whether to load the listings. */
+    private final boolean loadListing;
+
+    /** Whether to load the hints. */
+    private final boolean loadHint;
+
+    /** Whether to load the logs. */
+    private final boolean loadLogs;
+
+    /** Whether to load the attributes. */
+    private final boolean loadAttributes;
+
+    /** The latitude of the current <code>wpt</code> element. */
+    private String latitude;
+
+    /** The longitude of the current <code>wpt</code> element. */
+    private String longitude;
+
+    /** The code of the current <code>wpt</code> element. */
+    private String code;
+
+    /** The description of the current <code>wpt</code> element. */
+    private String description;
+
+    /** The symbol of the current <code>wpt</code> element. */
+    private String symbol;
+
+    /** The type of the current <code>wpt</code> element. */
+    private String type;
+
+    /** The date of the current <code>wpt</code> element. */
+    private String date;
+
+    /** The URL name of the current <code>wpt</code> element. */
+    private String urlName;
+
+    /** The parent of the current <code>wpt</code> element. */
+    private String parent;
+
+    /** Whether the current <code>wpt</code> element is a geocache. */
+    private boolean groundspeakCache;
+
+    /** The ID of the geocache. */
+    private Integer id;
+
+    /** Whether the geocache is archived. */
+    private Boolean archived;
+
+    /** Whether the geocache is available. */
+    private Boolean available;
+
+    /** The name of the geocache. */
+    private String cacheName;
+
+    /** The difficulty rating of the geocache. */
+    private String difficulty;
+
+    /** The terrain rating of the geocache. */
+    private String terrain;
+
+    /** The type of the geocache. */
+    private String cacheType;
+
+    /** The owner of the geocache. */
+    private String owner;
+
+    /** The container size of the geocache. */
+    private String container;
+
+    /** The listing of the geocache. */
+    private String listing;
+
+    /** The short description of the geocache. */
+    private String listingShort;
+
+    /** The hint of the geocache. */
+    private String hint;
+
+    /** Whether the geocache is for premium members only. */
+    private String gcPremium;
+
+    /** The number of favorite points of the geocache. */
+    private String favoritePoints;
+
+    /** The logs of the geocache as type, author, text and date values. */
+    private final List<String[]> logs = new ArrayList<>();
+
+    /** The attributes of the geocache as ID, "direction" and description values. */
+    private final List<String[]> attributes = new ArrayList<>();
+
+    /**
+     * The errors of single elements which have not been displayed yet or <code>null</code> if
+     * they should be displayed immediately.
+     */
+    private List<Exception> deferredErrors = null;
+
+    /**
+     * Create a new instance loading all fields.
+     *
+     * @param parser The parser to get the events from.
+     * @param geocaches The list to write the deserialized geocaches to.
+     * @param waypoints The list to write the deserialized waypoints to.
+     */
+    GpxBinder(
+            final PullParser parser,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints) {
+        this(parser, geocaches, waypoints, GpxField.all());
+    }
+
+    /**
+     * Create a new instance with the given values.
+     *
+     * @param parser The parser to get the events from.
+     * @param geocaches The list to write the deserialized geocaches to.
+     * @param waypoints The list to write the deserialized waypoints to.
+     * @param fields The optional fields to load. The elements of other fields are skipped.
+     */
+    GpxBinder(
+            final PullParser parser,
+            final List<Geocache> geocaches,
+            final List<Waypoint> waypoints,
+            final Set<GpxField> fields) {
+        this.parser = parser;
+        this.geocaches = geocaches;
+        this.waypoints = waypoints;
+        loadListing = fields.contains(GpxField.LISTING);
+        loadHint = fields.contains(GpxField.HINT);
+        loadLogs = fields.contains(GpxField.LOGS);
+        loadAttributes = fields.contains(GpxField.ATTRIBUTES);
+    }
+
+    /**
+     * Collect the errors of single elements instead of displaying them immediately.
+     *
+     * <p>This is required if the results might be discarded later on.
+     *
+     * @return The list the errors will be added to.
+     */
+    List<Exception> deferErrors() {
+        deferredErrors = new ArrayList<>();
+        return deferredErrors;
+    }
+
+    /**
+     * Read all events and deserialize all <code>wpt</code> elements.
+     *
+     * @throws MalFormedException The given data is not a valid GPX file.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    void bind() throws MalFormedException, IOException {
+        bind(false);
+    }
+
+    /**
+     * Read all events of a fragment of the <code>gpx</code> element content and deserialize all
+     * <code>wpt</code> elements.
+     *
+     * <p>The fragment has to consist of complete children of the <code>gpx</code> element. The
+     * same rules as for complete files apply, as if the fragment has been wrapped inside the
+     * <code>gpx</code> element.
+     *
+     * @throws MalFormedException The given data is not a valid GPX fragment.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    void bindFragment() throws MalFormedException, IOException {
+        bind(true);
+    }
+
+    /**
+     * Read all events and deserialize all <code>wpt</code> elements.
+     *
+     * @param fragment Whether the data is a fragment of the <code>gpx</code> element content.
+     * @throws MalFormedException The given data is not valid.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    private void bind(final boolean fragment) throws MalFormedException, IOException {
+        // For fragments, the implicit `gpx` element is not reported.
+        final int waypointDepth = fragment ? 1 : 2;
+        boolean insideGpx = fragment;
+
+        XmlEvent event;
+        while ((event = parser.next()) != XmlEvent.END_DOCUMENT) {
+            if (event != XmlEvent.START_ELEMENT) {
+                continue;
+            }
+
+            final int depth = parser.getDepth();
+            switch (GpxTag.of(parser.getName())) {
+                case GPX:
+                    // The `gpx` element is the root element.
+                    if (depth != 1 || fragment) {
+                        throw new MalFormedException();
+                    }
+                    insideGpx = true;
+                    break;
+                case WPT:
+                    // The `wpt` elements are direct children of the `gpx` element.
+                    if (depth != waypointDepth || !insideGpx) {
+                        throw new MalFormedException();
+                    }
+                    bindWaypoint();
+                    break;
+                default:
+                    if (depth == 1 && !fragment) {
+                        insideGpx = false;
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Advance to the next child of the element with the given depth.
+     *
+     * @param depth The depth of the parent element.
+     * @return Whether there is another child. If this is <code>false</code>, the parser is
+     *     positioned on the end event of the parent element.
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    private boolean nextChild(final int depth) throws MalFormedException, IOException {
+        while (true) {
+            final XmlEvent event = parser.next();
+            if (event == XmlEvent.START_ELEMENT) {
+                return true;
+            }
+            if (event == XmlEvent.END_ELEMENT && parser.getDepth() < depth) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Deserialize the current <code>wpt</code> element and add the result to the corresponding
+     * list.
+     *
+     * <p>Subclasses might hand the element over to be deserialized somewhere else instead. The
+     * parser has to be positioned on the end event of the element afterwards.
+     *
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    void bindWaypoint() throws MalFormedException, IOException {
+        reset();
+
+        // Load the coordinate.
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            final String attributeName = parser.getAttributeName(i);
+            if (attributeName.equals("lat")) {
+                latitude = parser.getAttributeValue(i);
+            } else if (attributeName.equals("lon")) {
+                longitude = parser.getAttributeValue(i);
+            }
+        }
+
+        // Load the remaining values.
+        final int depth = parser.getDepth();
+        while (nextChild(depth)) {
+            switch (GpxTag.of(parser.getName())) {
+                case NAME:
+                    code = parser.nextText();
+                    break;
+                case DESC:
+                    description = parser.nextText();
+                    break;
+                case SYM:
+                    symbol = parser.nextText();
+                    break;
+                case TYPE:
+                    type = parser.nextText();
+                    break;
+                case TIME:
+                    date = parser.nextText();
+                    break;
+                case URLNAME:
+                    urlName = parser.nextText();
+                    break;
+                case GROUNDSPEAK_CACHE:
+                    bindGroundspeakCache();
+                    break;
+                case GSAK_WPT_EXTENSION:
+                    bindWptExtension();
+                    break;
+                default:
+                    parser.skipElement();
+                    break;
+            }
+        }
+
+        // Create the instances. Errors will only affect the current element.
+        final Waypoint waypoint;
+        try {
+            waypoint = createWaypoint();
+        } catch (RuntimeException exception) {
+            reportError(exception);
+            return;
+        }
+
+        // Keep malformed geocaches as plain waypoints.
+        Geocache geocache = null;
+        if (groundspeakCache) {
+            try {
+                geocache = createGeocache();
+            } catch (RuntimeException exception) {
+                reportError(exception);
+            }
+        }
+
+        if (geocache != null) {
+            geocaches.add(geocache);
+        } else {
+            waypoints.add(waypoint);
+        }
+    }
+
+    /** Reset the values of the previous <code>wpt</code> element. */
+    private void reset() {
+        latitude = null;
+        longitude = null;
+        code = null;
+        description = null;
+        symbol = null;
+        type = null;
+        date = null;
+        urlName = null;
+        parent = null;
+        groundspeakCache = false;
+        id = null;
+        archived = null;
+        available = null;
+        cacheName = null;
+        difficulty = null;
+        terrain = null;
+        cacheType = null;
+        owner = null;
+        container = null;
+        listing = null;
+        listingShort = null;
+        hint = null;
+        gcPremium = null;
+        favoritePoints = null;
+        logs.clear();
+        attributes.clear();
+    }
+
+    /**
+     * Deserialize the current <code>groundspeak:cache</code> element.
+     *
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    private void bindGroundspeakCache() throws MalFormedException, IOException {
+        groundspeakCache = true;
+
+        // Load the attributes.
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            final String attributeName = parser.getAttributeName(i);
+            if (attributeName.equals("id")) {
+                try {
+                    id = Integer.valueOf(parser.getAttributeValue(i));
+                } catch (Exception ignored) {
+                }
+            } else if (attributeName.equals("archived")) {
+                archived = Boolean.valueOf(parser.getAttributeValue(i));
+            } else if (attributeName.equals("available")) {
+                available = Boolean.valueOf(parser.getAttributeValue(i));
+            }
+        }
+
+        // Load the child elements.
+        final int depth = parser.getDepth();
+        while (nextChild(depth)) {
+            switch (GpxTag.of(parser.getName())) {
+                case GROUNDSPEAK_NAME:
+                    cacheName = parser.nextText();
+                    break;
+                case GROUNDSPEAK_DIFFICULTY:
+                    difficulty = parser.nextText();
+                    break;
+                case GROUNDSPEAK_TERRAIN:
+                    terrain = parser.nextText();
+                    break;
+                case GROUNDSPEAK_TYPE:
+                    cacheType = parser.nextText();
+                    break;
+                case GROUNDSPEAK_OWNER:
+                    owner = parser.nextText();
+                    break;
+                case GROUNDSPEAK_CONTAINER:
+                    container = parser.nextText();
+                    break;
+                case GROUNDSPEAK_LONG_DESCRIPTION:
+                    if (loadListing) {
+                        listing = parser.nextText();
+                    } else {
+                        parser.skipElement();
+                    }
+                    break;
+                case GROUNDSPEAK_SHORT_DESCRIPTION:
+                    if (loadListing) {
+                        listingShort = parser.nextText();
+                    } else {
+                        parser.skipElement();
+                    }
+                    break;
+                case GROUNDSPEAK_ENCODED_HINTS:
+                    if (loadHint) {
+                        hint = parser.nextText();
+                    } else {
+                        parser.skipElement();
+                    }
+                    break;
+                case GROUNDSPEAK_LOGS:
+                    if (loadLogs) {
+                        bindLogs();
+                    } else {
+                        parser.skipElement();
+                    }
+                    break;
+                case GROUNDSPEAK_ATTRIBUTES:
+                    if (loadAttributes) {
+                        bindAttributes();
+                    } else {
+                        parser.skipElement();
+                    }
+                    break;
+                default:
+                    parser.skipElement();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Deserialize the current <code>groundspeak:logs</code> element.
+     *
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    private void bindLogs() throws MalFormedException, IOException {
+        final int depth = parser.getDepth();
+        while (nextChild(depth)) {
+            // Skip other elements and the geotoad info log.
+            if (GpxTag.of(parser.getName()) != GpxTag.GROUNDSPEAK_LOG
+                    || "-2".equals(parser.getAttributeValue("id"))) {
+                parser.skipElement();
+                continue;
+            }
+
+            final String[] log = new String[4];
+            final int logDepth = parser.getDepth();
+            while (nextChild(logDepth)) {
+                switch (GpxTag.of(parser.getName())) {
+                    case GROUNDSPEAK_TYPE:
+                        log[0] = parser.nextText();
+                        break;
+                    case GROUNDSPEAK_FINDER:
+                        log[1] = parser.nextText();
+                        break;
+                    case GROUNDSPEAK_TEXT:
+                        log[2] = parser.nextText();
+                        break;
+                    case GROUNDSPEAK_DATE:
+                        log[3] = parser.nextText();
+                        break;
+                    default:
+                        parser.skipElement();
+                        break;
+                }
+            }
+            logs.add(log);
+        }
+    }
+
+    /**
+     * Deserialize the current <code>groundspeak:attributes</code> element.
+     *
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    private void bindAttributes() throws MalFormedException, IOException {
+        final int depth = parser.getDepth();
+        while (nextChild(depth)) {
+            if (GpxTag.of(parser.getName()) != GpxTag.GROUNDSPEAK_ATTRIBUTE) {
+                parser.skipElement();
+                continue;
+            }
+
+            final String[] attribute = new String[3];
+            for (int i = 0; i < parser.getAttributeCount(); i++) {
+                final String attributeName = parser.getAttributeName(i);
+                if (attributeName.equals("id")) {
+                    attribute[0] = parser.getAttributeValue(i);
+                } else if (attributeName.equals("inc")) {
+                    attribute[1] = parser.getAttributeValue(i);
+                }
+            }
+            attribute[2] = parser.nextText();
+            attributes.add(attribute);
+        }
+    }
+
+    /**
+     * Deserialize the current <code>gsak:wptExtension</code> element.
+     *
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong while reading the data.
+     */
+    private void bindWptExtension() throws MalFormedException, IOException {
+        final int depth = parser.getDepth();
+        while (nextChild(depth)) {
+            switch (GpxTag.of(parser.getName())) {
+                case GSAK_PARENT:
+                    parent = parser.nextText();
+                    break;
+                case GSAK_IS_PREMIUM:
+                    gcPremium = parser.nextText();
+                    break;
+                case GSAK_FAV_POINTS:
+                    favoritePoints = parser.nextText();
+                    break;
+                default:
+                    parser.skipElement();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Report the given error of a single element.
+     *
+     * @param exception The error to report.
+     */
+    private void reportError(final Exception exception) {
+        if (deferredErrors != null) {
+            deferredErrors.add(exception);
+        } else {
+            ExceptionPanel.display(exception);
+        }
+    }
+
+    /**
+     * Create the waypoint instance from the current values.
+     *
+     * @return The deserialized waypoint.
+     */
+    private Waypoint createWaypoint() {
+        final Waypoint waypoint =
+                new Waypoint(createCoordinate(), code, description, symbol, type, parent);
+        waypoint.setDate(date);
+
+        return waypoint;
+    }
+
+    /**
+     * Create the coordinate from the current values.
+     *
+     * @return The deserialized coordinate.
+     */
+    private Coordinate createCoordinate() {
+        return new Coordinate(
+                latitude != null ? Double.valueOf(latitude) : 0.0,
+                longitude != null ? Double.valueOf(longitude) : 0.0);
+    }
+
+    /**
+     * Create the geocache instance from the current values.
+     *
+     * @return The deserialized geocache.
+     */
+    private Geocache createGeocache() {
+        if (container != null && container.equals("unknown")) {
+            container = null;
+        }
+
+        // Create the geocache instance.
+        final Geocache geocache =
+                new Geocache(
+                        code,
+                        cacheName != null ? cacheName : urlName,
+                        createCoordinate(),
+                        Double.valueOf(difficulty),
+                        Double.valueOf(terrain),
+                        cacheType);
+        geocache.setOwner(owner);
+        geocache.setContainer(container);
+        geocache.setListing(listing);
+        geocache.setListingShort(listingShort);
+        geocache.setHint(hint);
+        geocache.setId(id);
+        geocache.setDateHidden(date);
+        geocache.setArchived(archived);
+        geocache.setAvailable(available);
+        geocache.setGcPremium(gcPremium != null ? Boolean.valueOf(gcPremium) : null);
+        geocache.setFavoritePoints(favoritePoints != null ? Integer.valueOf(favoritePoints) : null);
+        geocache.addAttributes(createAttributes());
+        geocache.addLogs(createLogs());
+
+        return geocache;
+    }
+
+    /**
+     * Create the attribute instances from the current values.
+     *
+     * @return The deserialized attributes.
+     */
+    private List<GeocacheAttribute> createAttributes() {
+        final List<GeocacheAttribute> result = new ArrayList<>(attributes.size());
+        for (final String[] attribute : attributes) {
+            final Integer attributeId = attribute[0] != null ? Integer.valueOf(attribute[0]) : null;
+            final Integer attributeInc =
+                    attribute[1] != null ? Integer.valueOf(attribute[1]) : null;
+
+            try {
+                result.add(new GeocacheAttribute(attributeId, attributeInc, attribute[2]));
+            } catch (NullPointerException | IllegalArgumentException exception) {
+                reportError(exception);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create the log instances from the current values.
+     *
+     * @return The deserialized logs.
+     */
+    private List<GeocacheLog> createLogs() {
+        final List<GeocacheLog> result = new ArrayList<>(logs.size());
+        for (final String[] log : logs) {
+            if (log[0] != null && log[0].equals("Other")) {
+                continue;
+            }
+
+            try {
+                result.add(new GeocacheLog(log[0], log[1], log[2], log[3]));
+            } catch (NullPointerException | IllegalArgumentException exception) {
+                reportError(exception);
+            }
+        }
+        return result;
+    }
+}
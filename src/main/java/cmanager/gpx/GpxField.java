@@ -0,0 +1,42 @@
+package cmanager.gpx;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The optional geocache fields which can be excluded when loading GPX data.
+ *
+ * <p>The elements of excluded fields are skipped without decoding their content, which speeds up
+ * loading large files if only the basic data like the codes and coordinates is needed.
+ */
+public enum GpxField {
+    /** The long and the short description of the listing. */
+    LISTING,
+
+    /** The encoded hint. */
+    HINT,
+
+    /** The logs. */
+    LOGS,
+
+    /** The attributes. */
+    ATTRIBUTES;
+
+    /**
+     * Get a new set containing all fields.
+     *
+     * @return The set with all fields.
+     */
+    public static Set<GpxField> all() {
+        return EnumSet.allOf(GpxField.class);
+    }
+
+    /**
+     * Get a new set containing none of the fields.
+     *
+     * @return The empty set.
+     */
+    public static Set<GpxField> none() {
+        return EnumSet.noneOf(GpxField.class);
+    }
+}
@@ -0,0 +1,140 @@
+package cmanager.gpx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** The GPX tags known to the GPX handling, used to dispatch on elements. */
+enum GpxTag {
+    /** The root element. */
+    GPX("gpx"),
+
+    /** A waypoint, which might be a geocache as well. */
+    WPT("wpt"),
+
+    /** The waypoint code. */
+    NAME("name"),
+
+    /** The waypoint description. */
+    DESC("desc"),
+
+    /** The waypoint symbol. */
+    SYM("sym"),
+
+    /** The waypoint type. */
+    TYPE("type"),
+
+    /** The date associated with the waypoint. */
+    TIME("time"),
+
+    /** The name of the URL, which is the geocache name for geocaches. */
+    URLNAME("urlname"),
+
+    /** The Groundspeak extension for geocaches. */
+    GROUNDSPEAK_CACHE("groundspeak:cache"),
+
+    /** The geocache name. */
+    GROUNDSPEAK_NAME("groundspeak:name"),
+
+    /** The difficulty rating. */
+    GROUNDSPEAK_DIFFICULTY("groundspeak:difficulty"),
+
+    /** The terrain rating. */
+    GROUNDSPEAK_TERRAIN("groundspeak:terrain"),
+
+    /** The geocache type or the log type. */
+    GROUNDSPEAK_TYPE("groundspeak:type"),
+
+    /** The geocache owner. */
+    GROUNDSPEAK_OWNER("groundspeak:owner"),
+
+    /** The container size. */
+    GROUNDSPEAK_CONTAINER("groundspeak:container"),
+
+    /** The listing. */
+    GROUNDSPEAK_LONG_DESCRIPTION("groundspeak:long_description"),
+
+    /** The short description. */
+    GROUNDSPEAK_SHORT_DESCRIPTION("groundspeak:short_description"),
+
+    /** The hint. */
+    GROUNDSPEAK_ENCODED_HINTS("groundspeak:encoded_hints"),
+
+    /** The list of logs. */
+    GROUNDSPEAK_LOGS("groundspeak:logs"),
+
+    /** A single log. */
+    GROUNDSPEAK_LOG("groundspeak:log"),
+
+    /** The log date. */
+    GROUNDSPEAK_DATE("groundspeak:date"),
+
+    /** The log author. */
+    GROUNDSPEAK_FINDER("groundspeak:finder"),
+
+    /** The log text. */
+    GROUNDSPEAK_TEXT("groundspeak:text"),
+
+    /** The list of attributes. */
+    GROUNDSPEAK_ATTRIBUTES("groundspeak:attributes"),
+
+    /** A single attribute. */
+    GROUNDSPEAK_ATTRIBUTE("groundspeak:attribute"),
+
+    /** The GSAK extension. */
+    GSAK_WPT_EXTENSION("gsak:wptExtension"),
+
+    /** The parent geocache of a waypoint. */
+    GSAK_PARENT("gsak:Parent"),
+
+    /** Whether the geocache is for premium members only. */
+    GSAK_IS_PREMIUM("gsak:IsPremium"),
+
+    /** The number of favorite points. */
+    GSAK_FAV_POINTS("gsak:FavPoints"),
+
+    /** Any other tag. */
+    UNKNOWN(null);
+
+    /** The mapping from the tag names to the tags. */
+    private static final Map<String, GpxTag> TAGS = new HashMap<>();
+
+    static {
+        for (final GpxTag tag : values()) {
+            if (tag.tagName != null) {
+                TAGS.put(tag.tagName, tag);
+            }
+        }
+    }
+
+    /**
+     * Get the tag for the given tag name.
+     *
+     * @param tagName The tag name to get the tag for.
+     * @return The corresponding tag or {@link #UNKNOWN} if this is not a known tag.
+     */
+    static GpxTag of(final String tagName) {
+        final GpxTag tag = TAGS.get(tagName);
+        return tag != null ? tag : UNKNOWN;
+    }
+
+    /** The name of the tag as used inside the GPX files. */
+    private final String tagName;
+
+    /**
+     * Create a new tag.
+     *
+     * @param tagName The name of the tag.
+     */
+    GpxTag(final String tagName) {
+        this.tagName = tagName;
+    }
+
+    /**
+     * Get the name of the tag as used inside the GPX files.
+     *
+     * @return The tag name.
+     */
+    String getTagName() {
+        return tagName;
+    }
+}
@@ -0,0 +1,162 @@
+package cmanager.gpx;
+
+import cmanager.geo.Geocache;
+import cmanager.geo.GeocacheAttribute;
+import cmanager.geo.GeocacheLog;
+import cmanager.geo.Waypoint;
+import cmanager.global.Constants;
+import cmanager.global.Version;
+import cmanager.xml.XmlWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/** Serialize geocaches and waypoints to GPX without building an element tree first. */
+class GpxWriter {
+
+    /** The writer to write to. */
+    private final XmlWriter writer;
+
+    /**
+     * Create a new writer for the given stream.
+     *
+     * @param outputStream The stream to write to. This will not be closed by the writer.
+     */
+    GpxWriter(final OutputStream outputStream) {
+        writer = new XmlWriter(outputStream);
+    }
+
+    /**
+     * Write the given geocache list as a complete GPX file.
+     *
+     * @param list The list of geocaches to write.
+     * @param name The name of the geocache list.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    void write(final List<Geocache> list, final String name) throws IOException {
+        writer.writeDeclaration();
+
+        // Basic structure, schemes and namespaces.
+        writer.startElement("gpx")
+                .attribute("version", "1.0")
+                .attribute("creator", Constants.APP_NAME)
+                .attribute(
+                        "xsi:schemaLocation",
+                        "http://www.topografix.com/GPX/1/0 http://www.topografix.com/GPX/1/0/gpx.xsd http://www.groundspeak.com/cache/1/0/1 http://www.groundspeak.com/cache/1/0/1/cache.xsd http://www.gsak.net/xmlv1/6 http://www.gsak.net/xmlv1/6/gsak.xsd")
+                .attribute("xmlns", "http://www.topografix.com/GPX/1/0")
+                .attribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance")
+                .attribute("xmlns:groundspeak", "http://www.groundspeak.com/cache/1/0/1")
+                .attribute("xmlns:gsak", "http://www.gsak.net/xmlv1/6")
+                .attribute("xmlns:cgeo", "http://www.cgeo.org/wptext/1/0");
+
+        // Add some metadata.
+        writer.element("name", name);
+        writer.element(
+                "desc", "Geocache file generated by " + Constants.APP_NAME + " " + Version.VERSION);
+        writer.element("author", Constants.APP_NAME);
+
+        // Add the current timestamp.
+        final ZonedDateTime dateTime = ZonedDateTime.now();
+        writer.element("time", dateTime.format(DateTimeFormatter.ISO_INSTANT));
+
+        // Add the geocaches.
+        for (final Geocache geocache : list) {
+            writeGeocache(geocache);
+            for (final Waypoint waypoint : geocache.getWaypoints()) {
+                writeWaypoint(waypoint);
+            }
+        }
+
+        writer.endElement();
+        writer.flush();
+    }
+
+    /**
+     * Serialize the given waypoint.
+     *
+     * @param waypoint The waypoint to serialize.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    private void writeWaypoint(final Waypoint waypoint) throws IOException {
+        writer.startElement("wpt")
+                .attribute("lat", waypoint.getCoordinate().getLatitude())
+                .attribute("lon", waypoint.getCoordinate().getLongitude());
+
+        writer.element("time", waypoint.getDateStrIso8601());
+        writer.element("name", waypoint.getCode());
+        writer.element("desc", waypoint.getDescription());
+        writer.element("sym", waypoint.getSymbol());
+        writer.element("type", waypoint.getType());
+
+        writer.startElement("gsak:wptExtension");
+        writer.element("gsak:Parent", waypoint.getParent());
+        writer.endElement();
+
+        writer.endElement();
+    }
+
+    /**
+     * Serialize the given geocache.
+     *
+     * @param geocache The geocache to serialize.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    private void writeGeocache(final Geocache geocache) throws IOException {
+        writer.startElement("wpt")
+                .attribute("lat", geocache.getCoordinate().getLatitude())
+                .attribute("lon", geocache.getCoordinate().getLongitude());
+
+        writer.element("name", geocache.getCode());
+        writer.element("urlname", geocache.getName());
+        writer.element("time", geocache.getDateHiddenStrIso8601());
+
+        writer.startElement("groundspeak:cache")
+                .attribute("id", geocache.getId())
+                .attribute("available", geocache.isAvailable())
+                .attribute("archived", geocache.isArchived());
+
+        writer.startElement("groundspeak:attributes");
+        for (final GeocacheAttribute attribute : geocache.getAttributes()) {
+            writer.startElement("groundspeak:attribute")
+                    .attribute("id", attribute.getId())
+                    .attribute("inc", attribute.getInc())
+                    .body(attribute.getDescription())
+                    .endElement();
+        }
+        writer.endElement();
+
+        writer.element("groundspeak:name", geocache.getName());
+        writer.element("groundspeak:difficulty", geocache.getDifficulty());
+        writer.element("groundspeak:terrain", geocache.getTerrain());
+        writer.element("groundspeak:type", geocache.getType().asGcType());
+        writer.element("groundspeak:owner", geocache.getOwner());
+        writer.element("groundspeak:container", geocache.getContainer().asGc());
+        writer.element("groundspeak:long_description", geocache.getListing());
+        writer.element("groundspeak:short_description", geocache.getListingShort());
+        writer.element("groundspeak:encoded_hints", geocache.getHint());
+
+        if (geocache.getLogs().size() > 0) {
+            writer.startElement("groundspeak:logs");
+            for (final GeocacheLog log : geocache.getLogs()) {
+                writer.startElement("groundspeak:log");
+                writer.element("groundspeak:date", log.getDateStrIso8601());
+                writer.element("groundspeak:type", log.getTypeStr());
+                writer.element("groundspeak:finder", log.getAuthor());
+                writer.element("groundspeak:text", log.getText());
+                writer.endElement();
+            }
+            writer.endElement();
+        }
+
+        writer.endElement();
+
+        writer.startElement("gsak:wptExtension");
+        writer.element("gsak:IsPremium", geocache.isGcPremium());
+        writer.element("gsak:FavPoints", geocache.getFavoritePoints());
+        writer.endElement();
+
+        writer.endElement();
+    }
+}
@@ -6,6 +6,7 @@ import cmanager.okapi.RequestAuthorizationCallbackInterface;
 import cmanager.okapi.User;
 import cmanager.settings.Settings;
 import cmanager.settings.SettingsKey;
+import cmanager.util.CompressionProfile;
 import cmanager.util.DesktopUtil;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
@@ -14,6 +15,7 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -45,6 +47,9 @@ public class SettingsDialog extends JDialog {
     /** The text field for the username on GC. */
     private final JTextField textUsernameGc;
 
+    /** The combo box for the compression profile to save lists with. */
+    private final JComboBox<CompressionProfile> comboBoxCompression;
+
     /**
      * Create the dialog.
      *
@@ -160,9 +165,38 @@ public class SettingsDialog extends JDialog {
         panelGc.add(textUsernameGc, gbcTextUsernameGc);
         textUsernameGc.setColumns(10);
 
+        // Storage tab.
+        final JPanel panelStorage = new JPanel();
+        tabbedPane.addTab("Storage", null, panelStorage, null);
+        final GridBagLayout gblPanelStorage = new GridBagLayout();
+        gblPanelStorage.columnWidths = new int[] {215, 215, 0};
+        gblPanelStorage.rowHeights = new int[] {201, 0};
+        gblPanelStorage.columnWeights = new double[] {0.0, 0.0, Double.MIN_VALUE};
+        gblPanelStorage.rowWeights = new double[] {0.0, Double.MIN_VALUE};
+        panelStorage.setLayout(gblPanelStorage);
+
+        final JLabel labelCompression = new JLabel("Compression of saved lists:");
+        final GridBagConstraints gbcLabelCompression = new GridBagConstraints();
+        gbcLabelCompression.anchor = GridBagConstraints.NORTHWEST;
+        gbcLabelCompression.insets = new Insets(20, 20, 0, 5);
+        gbcLabelCompression.gridx = 0;
+        gbcLabelCompression.gridy = 0;
+        panelStorage.add(labelCompression, gbcLabelCompression);
+
+        comboBoxCompression = new JComboBox<>(CompressionProfile.values());
+        final GridBagConstraints gbcComboBoxCompression = new GridBagConstraints();
+        gbcComboBoxCompression.insets = new Insets(20, 0, 0, 0);
+        gbcComboBoxCompression.anchor = GridBagConstraints.NORTH;
+        gbcComboBoxCompression.fill = GridBagConstraints.HORIZONTAL;
+        gbcComboBoxCompression.gridx = 1;
+        gbcComboBoxCompression.gridy = 0;
+        panelStorage.add(comboBoxCompression, gbcComboBoxCompression);
+
         // Load the data from the settings.
         displayOkapiTokenStatus();
         textUsernameGc.setText(Settings.getString(SettingsKey.GC_USERNAME));
+        comboBoxCompression.setSelectedItem(
+                CompressionProfile.fromName(Settings.getString(SettingsKey.SAVE_COMPRESSION)));
     }
 
     /** Display the OKAPI token status. */
@@ -193,6 +227,9 @@ public class SettingsDialog extends JDialog {
     private void applyChanges() {
         // Save the non-OC settings.
         Settings.set(SettingsKey.GC_USERNAME, textUsernameGc.getText());
+        Settings.set(
+                SettingsKey.SAVE_COMPRESSION,
+                ((CompressionProfile) comboBoxCompression.getSelectedItem()).name());
         THIS.setVisible(false);
     }
 
@@ -8,6 +8,7 @@ import cmanager.gui.interfaces.RunLocationDialogInterface;
 import cmanager.list.filter.FilterModel;
 import cmanager.settings.Settings;
 import cmanager.settings.SettingsKey;
+import cmanager.util.CompressionProfile;
 import cmanager.util.ObjectHelper;
 import java.awt.Dimension;
 import java.beans.PropertyVetoException;
@@ -396,7 +397,7 @@ public class CacheListController {
         for (final Geocache geocache : cacheListModel.getList()) {
             count += geocache.getWaypoints().size();
         }
-        view.setWaypointCount(count, cacheListModel.getOrphans().size());
+        view.setWaypointCount(count, cacheListModel.getOrphanCount());
     }
 
     /** Handle list item change events. */
@@ -453,7 +454,10 @@ public class CacheListController {
      */
     public void store(final Path pathToGpx) throws Throwable {
         this.path = pathToGpx;
-        cacheListModel.store(getName(), pathToGpx.toString());
+        cacheListModel.store(
+                getName(),
+                pathToGpx.toString(),
+                CompressionProfile.fromName(Settings.getString(SettingsKey.SAVE_COMPRESSION)));
 
         modifiedAndUnsaved = false;
         updateTitleAndCount();
@@ -4,14 +4,33 @@ import cmanager.geo.Geocache;
 import cmanager.geo.Location;
 import cmanager.geo.Waypoint;
 import cmanager.gpx.Gpx;
+import cmanager.list.filter.FilterEvaluator;
 import cmanager.list.filter.FilterModel;
+import cmanager.util.CompressionProfile;
 import cmanager.util.FileHelper;
 import cmanager.util.UndoAction;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /** Data model for a cache list. */
 public class CacheListModel {
@@ -19,8 +38,14 @@ public class CacheListModel {
     /** The actual cache list. */
     private List<Geocache> list = new ArrayList<>();
 
-    /** The list of orphaned waypoints. */
-    private final LinkedList<Waypoint> orphanedWaypoints = new LinkedList<>();
+    /** The first geocache of the list with each code. */
+    private final Map<String, Geocache> geocachesByCode = new HashMap<>();
+
+    /** The orphaned waypoints by the code of their (deduced) parent geocache. */
+    private final Map<String, List<Waypoint>> orphanedWaypoints = new LinkedHashMap<>();
+
+    /** The number of orphaned waypoints. */
+    private int orphanCount = 0;
 
     /** A pointer to this class instance. */
     final CacheListModel THIS = this;
@@ -37,11 +62,34 @@ public class CacheListModel {
     /** The filtered cache list. */
     private List<Geocache> listFiltered;
 
-    /** The maximum number of undo actions allowed. */
-    private static final int MAX_UNDO_COUNT = 300;
+    /** The number of latest undo actions which are kept regardless of their size. */
+    private static final int MIN_UNDO_ACTIONS = 10;
+
+    /**
+     * The maximum number of bytes retained by the undo actions, apart from the latest ones. This
+     * is a quarter of the heap, but at least 16 MiB.
+     */
+    private static final long MAX_UNDO_SIZE =
+            Math.max(16L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+
+    /** The undo actions for this list, with the latest one being the last. */
+    private final Deque<UndoAction> undoActions = new ArrayDeque<>();
+
+    /** The number of bytes retained by the undo actions. */
+    private long undoSize = 0;
 
-    /** The undo actions for this list. */
-    private final List<UndoAction> undoActions = new ArrayList<>();
+    /** The file the list has been saved to last, or <code>null</code> if there is none. */
+    private StoredFile storedFile = null;
+
+    /**
+     * The number of leading geocaches of the list which are at the same position as in the file
+     * saved last. Modifications of the geocaches themselves are tracked separately.
+     */
+    private int unchangedCount = 0;
+
+    /** The geocaches which have been modified since the last save, compared by identity. */
+    private final Set<Geocache> modifiedCaches =
+            Collections.newSetFromMap(new IdentityHashMap<>());
 
     /**
      * Add the given geocache to the list.
@@ -50,6 +98,7 @@ public class CacheListModel {
      */
     private void addCache(final Geocache geocache) {
         list.add(geocache);
+        geocachesByCode.putIfAbsent(geocache.getCode(), geocache);
         matchOrphans(geocache);
 
         reFilteringRequired = true;
@@ -106,44 +155,53 @@ public class CacheListModel {
     /**
      * Match the given geocache with the orphaned waypoints.
      *
-     * <p>This will add the waypoint to the given geocache and remove the waypoint entry from the
-     * list of orphaned waypoints if possible.
+     * <p>This will add the waypoints belonging to the given geocache to it and remove them from
+     * the orphaned waypoints.
      *
      * @param geocache The geocache to match.
      */
     private void matchOrphans(final Geocache geocache) {
-        orphanedWaypoints.removeIf(waypoint -> addWaypointToCache(geocache, waypoint));
+        final List<Waypoint> waypoints = orphanedWaypoints.remove(geocache.getCode());
+        if (waypoints == null) {
+            return;
+        }
+
+        for (final Waypoint waypoint : waypoints) {
+            geocache.addWaypoint(waypoint);
+        }
+        orphanCount -= waypoints.size();
+        modifiedCaches.add(geocache);
     }
 
     /**
-     * Add the given waypoint to the given geocache.
+     * Add the given waypoint to the orphaned waypoints.
      *
-     * @param geocache The geocache to add the waypoint to.
      * @param waypoint The waypoint to add.
-     * @return `True` if the waypoint belongs to the geocache, `False` otherwise.
+     * @return The code of the geocache the waypoint belongs to.
      */
-    private static boolean addWaypointToCache(final Geocache geocache, final Waypoint waypoint) {
-        final String parent = waypoint.getParent();
+    private String addOrphan(final Waypoint waypoint) {
+        final String parentCode = getParentCode(waypoint);
+        orphanedWaypoints.computeIfAbsent(parentCode, code -> new ArrayList<>()).add(waypoint);
+        orphanCount++;
+        return parentCode;
+    }
 
+    /**
+     * Get the code of the geocache the given waypoint belongs to.
+     *
+     * @param waypoint The waypoint to get the parent for.
+     * @return The parent of the waypoint if it is known already, otherwise the geocache code
+     *     deduced from the waypoint code.
+     */
+    private static String getParentCode(final Waypoint waypoint) {
+        final String parent = waypoint.getParent();
         if (parent != null) {
-            // The waypoint already has a parent, so check if the given geocache is the parent.
-            if (geocache.getCode().equals(parent)) {
-                geocache.addWaypoint(waypoint);
-                return true;
-            }
-        } else {
-            // The waypoint does not yet have a parent, so build the deduced geocache code from the
-            // waypoint code and check if the given geocache is the (deduced) parent.
-            String name = waypoint.getCode();
-            name = name.substring(2);
-            name = "GC" + name;
-
-            if (geocache.getCode().equals(name)) {
-                geocache.addWaypoint(waypoint);
-                return true;
-            }
+            return parent;
         }
-        return false;
+
+        // Replace the prefix of the waypoint code by the one of the geocache codes.
+        final String code = waypoint.getCode();
+        return "GC" + code.substring(Math.min(2, code.length()));
     }
 
     /**
@@ -152,16 +210,11 @@ public class CacheListModel {
      * @param removeList The list of geocaches to remove.
      */
     public void removeCaches(final List<Geocache> removeList) {
-        recordUndoAction();
-
-        for (final Geocache remove : removeList) {
-            for (int i = 0; i < list.size(); i++) {
-                if (list.get(i) == remove) {
-                    list.remove(i);
-                    break;
-                }
-            }
-        }
+        // Compact the list in a single pass.
+        final Set<Geocache> removeSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        removeSet.addAll(removeList);
+        recordUndoAction(UndoAction.removeIf(list, removeSet::contains));
+        indexCodes();
 
         reFilteringRequired = true;
     }
@@ -172,20 +225,17 @@ public class CacheListModel {
      * @param addList The list of geocaches to add.
      */
     public void addCaches(final List<Geocache> addList) {
-        recordUndoAction();
-
+        final int start = list.size();
         for (final Geocache geocacheAdd : addList) {
-            boolean match = false;
-            for (final Geocache geocacheOld : list)
-                if (geocacheOld.getCode().equals(geocacheAdd.getCode())) {
-                    match = true;
-                    geocacheOld.update(geocacheAdd);
-                    break;
-                }
-            if (!match) {
+            final Geocache geocacheOld = geocachesByCode.get(geocacheAdd.getCode());
+            if (geocacheOld != null) {
+                geocacheOld.update(geocacheAdd);
+                modifiedCaches.add(geocacheOld);
+            } else {
                 addCache(geocacheAdd);
             }
         }
+        recordUndoAction(UndoAction.added(start, list.size() - start));
 
         reFilteringRequired = true;
     }
@@ -200,10 +250,7 @@ public class CacheListModel {
             return listFiltered;
         }
 
-        List<Geocache> filtered = new ArrayList<>(list);
-        for (final FilterModel filter : filters) {
-            filtered = filter.getFiltered(filtered);
-        }
+        final List<Geocache> filtered = FilterEvaluator.filter(list, filters);
 
         reFilteringRequired = false;
         listFiltered = filtered;
@@ -212,20 +259,41 @@ public class CacheListModel {
 
     /** Remove the geocaches from the complete list which do not match the filters. */
     public void removeCachesNotInFilter() {
-        recordUndoAction();
+        final Set<Geocache> filterSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        filterSet.addAll(getList());
 
-        final List<Geocache> filterList = getList();
+        recordUndoAction(UndoAction.removeIf(list, geocache -> !filterSet.contains(geocache)));
+        indexCodes();
+    }
 
-        list.removeIf(geocache -> !filterList.contains(geocache));
+    /** Rebuild the index of the geocaches by code after removing geocaches from the list. */
+    private void indexCodes() {
+        geocachesByCode.clear();
+        for (final Geocache geocache : list) {
+            geocachesByCode.putIfAbsent(geocache.getCode(), geocache);
+        }
     }
 
     /**
      * Get the orphaned waypoints.
      *
-     * @return The orphaned waypoints.
+     * @return A copy of the orphaned waypoints, grouped by their (deduced) parent.
+     */
+    public List<Waypoint> getOrphans() {
+        final List<Waypoint> orphans = new ArrayList<>(orphanCount);
+        for (final List<Waypoint> waypoints : orphanedWaypoints.values()) {
+            orphans.addAll(waypoints);
+        }
+        return orphans;
+    }
+
+    /**
+     * Get the number of orphaned waypoints.
+     *
+     * @return The number of orphaned waypoints.
      */
-    public LinkedList<Waypoint> getOrphans() {
-        return orphanedWaypoints;
+    public int getOrphanCount() {
+        return orphanCount;
     }
 
     /**
@@ -254,55 +322,213 @@ public class CacheListModel {
      * @throws Throwable Something went wrong with loading the dat.a
      */
     public void load(final String pathToGpx) throws Throwable {
+        final boolean wasEmpty = list.isEmpty() && orphanCount == 0;
+        final List<Integer> loadedCounts = new ArrayList<>();
+        final boolean[] selfContained = {true};
+
+        // The files of an archive are parsed concurrently, but added in the archive order.
         FileHelper.processFiles(
                 pathToGpx,
-                new FileHelper.InputAction() {
-                    public void process(InputStream inputStream) throws Throwable {
-                        final List<Geocache> geocacheList = new ArrayList<>();
-                        final List<Waypoint> waypointList = new ArrayList<>();
+                new FileHelper.ParsingInputAction<LoadedFile>() {
+                    @Override
+                    public LoadedFile parse(InputStream inputStream) throws Throwable {
+                        final LoadedFile loadedFile = new LoadedFile();
+                        Gpx.loadFromStream(
+                                inputStream, loadedFile.geocaches, loadedFile.waypoints);
+                        return loadedFile;
+                    }
 
-                        Gpx.loadFromStream(inputStream, geocacheList, waypointList);
+                    @Override
+                    public void process(InputStream inputStream) throws Throwable {
+                        // Single streams like GZIP files are not loaded concurrently otherwise.
+                        final LoadedFile loadedFile = new LoadedFile();
+                        Gpx.loadFromStreamConcurrently(
+                                inputStream, loadedFile.geocaches, loadedFile.waypoints);
+                        merge(loadedFile);
+                    }
 
-                        orphanedWaypoints.addAll(waypointList);
-                        for (final Geocache geocache : list) {
-                            matchOrphans(geocache);
-                        }
+                    @Override
+                    public LoadedFile parse(ByteBuffer byteBuffer) throws Throwable {
+                        final LoadedFile loadedFile = new LoadedFile();
+                        Gpx.loadFromBuffer(byteBuffer, loadedFile.geocaches, loadedFile.waypoints);
+                        return loadedFile;
+                    }
 
-                        for (final Geocache geocache : geocacheList) {
-                            addCache(geocache);
-                        }
+                    @Override
+                    public void merge(LoadedFile loadedFile) {
+                        loadedCounts.add(loadedFile.geocaches.size());
+                        selfContained[0] &= loadedFile.isSelfContained();
+                        addLoaded(loadedFile.geocaches, loadedFile.waypoints);
                     }
                 });
 
+        if (wasEmpty && selfContained[0] && orphanCount == 0) {
+            recordLoadedFile(pathToGpx, loadedCounts);
+        }
         reFilteringRequired = true;
     }
 
+    /**
+     * Record the given loaded file as the file saved last, if it has the layout written by {@link
+     * #store(String, String, CompressionProfile)}.
+     *
+     * <p>This allows copying the unchanged GPX files when saving the list for the first time after
+     * opening it. The compression profile of the file is unknown, so its GPX files are copied
+     * regardless of the profile used for saving.
+     *
+     * @param pathToGpx The loaded file.
+     * @param loadedCounts The number of geocaches loaded from each GPX file, in archive order.
+     * @throws IOException The entries of the file could not be read.
+     */
+    private void recordLoadedFile(final String pathToGpx, final List<Integer> loadedCounts)
+            throws IOException {
+        if (!FileHelper.getFileExtension(pathToGpx).equals("zip")) {
+            return;
+        }
+
+        final List<String> entryNames = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(pathToGpx)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                if (!zipEntry.isDirectory()) {
+                    entryNames.add(zipEntry.getName());
+                }
+            }
+        }
+        if (entryNames.isEmpty() || entryNames.size() != loadedCounts.size()) {
+            return;
+        }
+
+        // Deduce the list name from the first entry and compare the layout.
+        final String firstName = entryNames.get(0);
+        final String listName =
+                entryNames.size() == 1 || !firstName.endsWith("-1.gpx")
+                        ? firstName
+                        : firstName.substring(0, firstName.length() - "-1.gpx".length());
+        if (!entryNames.equals(Gpx.getEntryNames(listName, list.size()))) {
+            return;
+        }
+        for (int index = 0; index < loadedCounts.size(); index++) {
+            final int start = index * Gpx.CACHES_PER_GPX;
+            if (loadedCounts.get(index) != Math.min(Gpx.CACHES_PER_GPX, list.size() - start)) {
+                return;
+            }
+        }
+
+        storedFile = new StoredFile(pathToGpx, null, entryNames, list.size());
+        unchangedCount = list.size();
+        modifiedCaches.clear();
+    }
+
+    /**
+     * Add the geocaches and waypoints loaded from a file to the list.
+     *
+     * @param geocacheList The loaded geocaches.
+     * @param waypointList The loaded waypoints.
+     */
+    private void addLoaded(final List<Geocache> geocacheList, final List<Waypoint> waypointList) {
+        // The existing geocaches have claimed their waypoints already, so only the parents of the
+        // new waypoints have to be looked up.
+        final List<String> parentCodes = new ArrayList<>(waypointList.size());
+        for (final Waypoint waypoint : waypointList) {
+            parentCodes.add(addOrphan(waypoint));
+        }
+        for (final String parentCode : parentCodes) {
+            final Geocache geocache = geocachesByCode.get(parentCode);
+            if (geocache != null) {
+                matchOrphans(geocache);
+            }
+        }
+
+        for (final Geocache geocache : geocacheList) {
+            addCache(geocache);
+        }
+    }
+
     /**
      * Save the unfiltered list with the given name to the given GPX file.
      *
+     * <p>When saving to the same file again, only the GPX files containing added, removed, moved
+     * or modified geocaches are written again, while the other ones are copied from the existing
+     * file.
+     *
      * @param listName The name to use for the list.
      * @param pathToGpx The GPX file to write to.
+     * @param profile The compression profile to use.
      * @throws Throwable Something went wrong when writing the data.
      */
-    public void store(final String listName, final String pathToGpx) throws Throwable {
-        Gpx.saveToFile(list, listName, pathToGpx);
+    public void store(
+            final String listName, final String pathToGpx, final CompressionProfile profile)
+            throws Throwable {
+        final List<String> entryNames = Gpx.getEntryNames(listName, list.size());
+        final StoredFile previous =
+                storedFile != null && storedFile.matches(pathToGpx, profile) ? storedFile : null;
+        storedFile = null;
+        Gpx.saveToFile(
+                list,
+                listName,
+                pathToGpx,
+                profile,
+                index -> previous != null && isUnchanged(previous, entryNames, index));
+
+        storedFile = new StoredFile(pathToGpx, profile, entryNames, list.size());
+        unchangedCount = list.size();
+        modifiedCaches.clear();
     }
 
-    /** Record a new undo action by saving the current state of the unfiltered list. */
-    private void recordUndoAction() {
-        undoActions.add(new UndoAction(list));
-        if (undoActions.size() > MAX_UNDO_COUNT) {
-            undoActions.remove(0);
+    /**
+     * Check whether the GPX file with the given index is unchanged since the last save.
+     *
+     * @param previous The file saved last.
+     * @param entryNames The names of the GPX files to write.
+     * @param index The index of the GPX file to check.
+     * @return Whether the GPX file has the same name and contains the same unmodified geocaches in
+     *     the same order.
+     */
+    private boolean isUnchanged(
+            final StoredFile previous, final List<String> entryNames, final int index) {
+        final int start = index * Gpx.CACHES_PER_GPX;
+        final int end = Math.min(start + Gpx.CACHES_PER_GPX, list.size());
+        if (index >= previous.entryNames.size()
+                || !previous.entryNames.get(index).equals(entryNames.get(index))
+                || end > unchangedCount
+                || end != Math.min(start + Gpx.CACHES_PER_GPX, previous.geocacheCount)) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (modifiedCaches.contains(list.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the given undo action, dropping the oldest ones if they exceed the size limit.
+     *
+     * @param action The change of the unfiltered list to record.
+     */
+    private void recordUndoAction(final UndoAction action) {
+        undoActions.addLast(action);
+        undoSize += action.getSize();
+        unchangedCount = Math.min(unchangedCount, action.getFirstIndex());
+        while (undoSize > MAX_UNDO_SIZE && undoActions.size() > MIN_UNDO_ACTIONS) {
+            undoSize -= undoActions.removeFirst().getSize();
         }
     }
 
     /** Revert the unfiltered list to the previous (recorded) version. */
     public void replayLastUndoAction() {
-        if (undoActions.size() == 0) {
+        if (undoActions.isEmpty()) {
             return;
         }
-        final UndoAction action = undoActions.remove(undoActions.size() - 1);
-        list = action.getState();
+        final UndoAction action = undoActions.removeLast();
+        undoSize -= action.getSize();
+        unchangedCount = Math.min(unchangedCount, action.getFirstIndex());
+        list = action.revert(list);
+        indexCodes();
         reFilteringRequired = true;
     }
 
@@ -323,4 +549,98 @@ public class CacheListModel {
     public CacheListTableModel getTableModel() {
         return new CacheListTableModel(this);
     }
+
+    /** The state of the list in the file it has been saved to last. */
+    private static class StoredFile {
+
+        /** The path of the file. */
+        private final Path path;
+
+        /** The compression profile used or <code>null</code> if it is unknown. */
+        private final CompressionProfile profile;
+
+        /** The names of the GPX files inside the archive. */
+        private final List<String> entryNames;
+
+        /** The number of geocaches written to the file. */
+        private final int geocacheCount;
+
+        /** The size of the file after saving it. */
+        private final long size;
+
+        /** The modification time of the file after saving it. */
+        private final FileTime lastModifiedTime;
+
+        /**
+         * Record the state of the given saved file.
+         *
+         * @param pathToGpx The path of the file.
+         * @param profile The compression profile used or <code>null</code> if it is unknown.
+         * @param entryNames The names of the GPX files inside the archive.
+         * @param geocacheCount The number of geocaches written to the file.
+         * @throws IOException The attributes of the file could not be read.
+         */
+        private StoredFile(
+                final String pathToGpx,
+                final CompressionProfile profile,
+                final List<String> entryNames,
+                final int geocacheCount)
+                throws IOException {
+            this.path = Paths.get(pathToGpx).toAbsolutePath();
+            this.profile = profile;
+            this.entryNames = entryNames;
+            this.geocacheCount = geocacheCount;
+            this.size = Files.size(path);
+            this.lastModifiedTime = Files.getLastModifiedTime(path);
+        }
+
+        /**
+         * Check whether the given file is the one saved last and has not been modified since.
+         *
+         * @param pathToGpx The path of the file.
+         * @param profile The compression profile to use.
+         * @return Whether the GPX files of the saved file can be reused.
+         */
+        private boolean matches(final String pathToGpx, final CompressionProfile profile) {
+            try {
+                final Path otherPath = Paths.get(pathToGpx).toAbsolutePath();
+                return path.equals(otherPath)
+                        && (this.profile == null || this.profile == profile)
+                        && size == Files.size(otherPath)
+                        && lastModifiedTime.equals(Files.getLastModifiedTime(otherPath));
+            } catch (IOException exception) {
+                return false;
+            }
+        }
+    }
+
+    /** The geocaches and waypoints loaded from a single file. */
+    private static class LoadedFile {
+
+        /** The loaded geocaches. */
+        private final List<Geocache> geocaches = new ArrayList<>();
+
+        /** The loaded waypoints. */
+        private final List<Waypoint> waypoints = new ArrayList<>();
+
+        /**
+         * Check whether all the waypoints belong to geocaches of this file.
+         *
+         * <p>Only then saving the geocaches of this file again yields the same content.
+         *
+         * @return Whether all the waypoints belong to geocaches of this file.
+         */
+        private boolean isSelfContained() {
+            final Set<String> codes = new HashSet<>();
+            for (final Geocache geocache : geocaches) {
+                codes.add(geocache.getCode());
+            }
+            for (final Waypoint waypoint : waypoints) {
+                if (!codes.contains(getParentCode(waypoint))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
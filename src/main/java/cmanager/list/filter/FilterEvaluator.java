@@ -0,0 +1,192 @@
+package cmanager.list.filter;
+
+import cmanager.geo.Geocache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Apply multiple filters to a geocache list in a single pass.
+ *
+ * <p>Each geocache is checked against the filters one after another, stopping at the first filter
+ * rejecting it. The list is split into chunks which are evaluated in parallel on the common
+ * fork/join pool, while the accepted geocaches keep their original order. The filters are ordered
+ * by the cost and the rejection rate measured during the previous evaluation, such that cheap
+ * filters rejecting many geocaches are checked first.
+ */
+public final class FilterEvaluator {
+
+    /** The number of geocaches per chunk. */
+    static final int CHUNK_SIZE = 1024;
+
+    /** Only the checks of every n-th geocache are timed, as timing costs more than most checks. */
+    private static final int SAMPLE_INTERVAL = 16;
+
+    /** Utility class. */
+    private FilterEvaluator() {}
+
+    /**
+     * Return the geocaches of the given list which pass all the given filters.
+     *
+     * @param list The list to filter. This will not be modified.
+     * @param filters The filters to apply.
+     * @return The filtered copy of the list.
+     */
+    public static List<Geocache> filter(
+            final List<Geocache> list, final List<FilterModel> filters) {
+        if (filters.isEmpty()) {
+            return new ArrayList<>(list);
+        }
+
+        // The sort is stable, so filters without measurements keep their order.
+        final FilterModel[] ordered = filters.toArray(new FilterModel[filters.size()]);
+        Arrays.sort(ordered, Comparator.comparingDouble(FilterModel::getRank));
+
+        final int chunkCount = (list.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final List<Chunk> chunks =
+                IntStream.range(0, chunkCount)
+                        .parallel()
+                        .mapToObj(index -> evaluateChunk(list, ordered, index))
+                        .collect(Collectors.toList());
+
+        // Merge the chunks in list order.
+        int size = 0;
+        for (final Chunk chunk : chunks) {
+            size += chunk.accepted.size();
+        }
+        final List<Geocache> result = new ArrayList<>(size);
+        final Chunk total = new Chunk(ordered.length);
+        for (final Chunk chunk : chunks) {
+            result.addAll(chunk.accepted);
+            total.add(chunk);
+        }
+
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i].updateStatistics(
+                    total.checks[i], total.rejections[i], total.samples[i], total.sampledTime[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Check the geocaches of the chunk with the given index.
+     *
+     * @param list The list to filter.
+     * @param filters The filters to apply, in the order to check them.
+     * @param index The index of the chunk.
+     * @return The evaluated chunk.
+     */
+    private static Chunk evaluateChunk(
+            final List<Geocache> list, final FilterModel[] filters, final int index) {
+        final int start = index * CHUNK_SIZE;
+        final int end = Math.min(list.size(), start + CHUNK_SIZE);
+        return new Chunk(filters.length).evaluate(list, filters, start, end);
+    }
+
+    /**
+     * Check whether the given geocache matches the given filter.
+     *
+     * <p>Errors of single geocaches are printed and do not affect the other geocaches.
+     *
+     * @param filter The filter to apply.
+     * @param geocache The geocache to check.
+     * @return Whether the geocache matches. This is <code>false</code> if the check failed.
+     */
+    private static boolean matches(final FilterModel filter, final Geocache geocache) {
+        try {
+            return filter.matches(geocache);
+        } catch (RuntimeException exception) {
+            exception.printStackTrace();
+            return false;
+        }
+    }
+
+    /** The accepted geocaches and the filter statistics of a part of the list. */
+    private static class Chunk {
+
+        /** The accepted geocaches, in list order. */
+        private final List<Geocache> accepted = new ArrayList<>();
+
+        /** The number of checks per filter. */
+        private final long[] checks;
+
+        /** The number of rejections per filter. */
+        private final long[] rejections;
+
+        /** The number of timed checks per filter. */
+        private final long[] samples;
+
+        /** The time in nanoseconds of the timed checks per filter. */
+        private final long[] sampledTime;
+
+        /**
+         * Create a new instance for the given number of filters.
+         *
+         * @param filterCount The number of filters.
+         */
+        Chunk(final int filterCount) {
+            checks = new long[filterCount];
+            rejections = new long[filterCount];
+            samples = new long[filterCount];
+            sampledTime = new long[filterCount];
+        }
+
+        /**
+         * Check the geocaches of the given range.
+         *
+         * @param list The list to filter.
+         * @param filters The filters to apply, in the order to check them.
+         * @param start The index of the first geocache to check.
+         * @param end The index after the last geocache to check.
+         * @return The current chunk.
+         */
+        Chunk evaluate(
+                final List<Geocache> list,
+                final FilterModel[] filters,
+                final int start,
+                final int end) {
+            for (int i = start; i < end; i++) {
+                final Geocache geocache = list.get(i);
+                final boolean sample = i % SAMPLE_INTERVAL == 0;
+
+                boolean passed = true;
+                for (int f = 0; f < filters.length && passed; f++) {
+                    checks[f]++;
+                    if (sample) {
+                        final long before = System.nanoTime();
+                        passed = matches(filters[f], geocache);
+                        sampledTime[f] += System.nanoTime() - before;
+                        samples[f]++;
+                    } else {
+                        passed = matches(filters[f], geocache);
+                    }
+                    if (!passed) {
+                        rejections[f]++;
+                    }
+                }
+
+                if (passed) {
+                    accepted.add(geocache);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Add the statistics of the given chunk to the current one.
+         *
+         * @param chunk The chunk to add the statistics of.
+         */
+        void add(final Chunk chunk) {
+            for (int f = 0; f < checks.length; f++) {
+                checks[f] += chunk.checks[f];
+                rejections[f] += chunk.rejections[f];
+                samples[f] += chunk.samples[f];
+                sampledTime[f] += chunk.sampledTime[f];
+            }
+        }
+    }
+}
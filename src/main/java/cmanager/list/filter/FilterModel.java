@@ -3,8 +3,7 @@ package cmanager.list.filter;
 import cmanager.geo.Geocache;
 import cmanager.gui.components.CacheListFilterPanel;
 import cmanager.list.CacheListFilterType;
-import cmanager.util.ThreadStore;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /** Handle list filtering. */
@@ -21,6 +20,18 @@ public abstract class FilterModel extends CacheListFilterPanel {
         super(filterType);
     }
 
+    /**
+     * The average time in nanoseconds of a single check, as measured during the last evaluation
+     * reaching this filter.
+     */
+    private transient double averageCost = 0;
+
+    /**
+     * The share of the checked geocaches which have been rejected during the last evaluation
+     * reaching this filter.
+     */
+    private transient double rejectionRate = 1;
+
     /**
      * Return a filtered copy of the given list.
      *
@@ -30,76 +41,47 @@ public abstract class FilterModel extends CacheListFilterPanel {
      * @return The filtered list.
      */
     public List<Geocache> getFiltered(final List<Geocache> originalList) {
-        final int listSize = originalList.size();
-
-        // Stop if this is an empty list. Otherwise we get a division by zero as the number of cores
-        // cannot be greater than the list size.
-        if (listSize == 0) {
-            return originalList;
-        }
-
-        final ThreadStore threadStore = new ThreadStore();
-        final int cores = threadStore.getCores(listSize);
-        final int perProcess = listSize / cores;
-
-        final List<List<Geocache>> lists = new ArrayList<>(5);
-        for (int core = 0; core < cores; core++) {
-            lists.add(new ArrayList<>());
-        }
-        for (int core = 0; core < cores; core++) {
-            final int start = perProcess * core;
-            final int coreFinal = core;
-
-            int temp = Math.min(perProcess * (core + 1), listSize);
-            if (core == cores - 1) {
-                temp = listSize;
-            }
-            final int end = temp;
-
-            threadStore.addAndRun(
-                    new Thread(() -> filterList(originalList, lists, start, end, coreFinal)));
-        }
-        try {
-            threadStore.joinAndThrow();
-        } catch (Throwable throwable) {
-            throwable.printStackTrace();
-        }
+        return FilterEvaluator.filter(originalList, Collections.singletonList(this));
+    }
 
-        final List<Geocache> listAll = new ArrayList<>();
-        for (final List<Geocache> list : lists) {
-            listAll.addAll(list);
-        }
+    /**
+     * Check whether the given geocache passes this filter, taking the inversion into account.
+     *
+     * @param geocache The geocache to check.
+     * @return Whether the geocache should be kept.
+     */
+    public boolean matches(final Geocache geocache) {
+        return isGood(geocache) != inverted;
+    }
 
-        return listAll;
+    /**
+     * Get the rank of this filter for ordering multiple filters.
+     *
+     * <p>Filters with a lower rank should be checked first. This is the expected time spent per
+     * rejected geocache, thus preferring cheap filters which reject many geocaches.
+     *
+     * @return The rank of the filter.
+     */
+    double getRank() {
+        return rejectionRate > 0 ? averageCost / rejectionRate : Double.MAX_VALUE;
     }
 
     /**
-     * Filter the given list.
+     * Update the measured cost and selectivity of this filter.
      *
-     * @param originalList The list to filter.
-     * @param lists The output lists, with each sub-list belonging to one core.
-     * @param start The start index to use inside the original list.
-     * @param end The end index to use inside the original list.
-     * @param core The core this filtering is done with. This basically is the index of the sub-list
-     *     to write the data to.
+     * @param checks The number of checked geocaches.
+     * @param rejections The number of rejected geocaches.
+     * @param samples The number of checks the time has been measured for.
+     * @param sampledTime The time in nanoseconds of the measured checks.
      */
-    private void filterList(
-            final List<Geocache> originalList,
-            final List<List<Geocache>> lists,
-            int start,
-            int end,
-            int core) {
-        final List<Geocache> list = lists.get(core);
-        try {
-            for (int i = start; i < end; i++) {
-                final Geocache geocache = originalList.get(i);
-                if ((!inverted && isGood(geocache)) || (inverted && !isGood(geocache))) {
-                    list.add(geocache);
-                }
-            }
-        } catch (Throwable throwable) {
-            final Thread thread = Thread.currentThread();
-            thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
+    void updateStatistics(
+            final long checks, final long rejections, final long samples, final long sampledTime) {
+        if (checks == 0) {
+            return;
+        }
+        rejectionRate = (double) rejections / checks;
+        if (samples > 0) {
+            averageCost = (double) sampledTime / samples;
         }
     }
 
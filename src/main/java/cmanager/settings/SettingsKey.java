@@ -21,7 +21,10 @@ public enum SettingsKey {
     LOCATION_LIST("locationList", null),
 
     /** The cache list controller instances. */
-    CLC_LIST("clcList", null);
+    CLC_LIST("clcList", null),
+
+    /** The compression profile to use when saving lists. */
+    SAVE_COMPRESSION("saveCompression", null);
 
     /** The name of the key as a string. */
     private final String nameString;
@@ -0,0 +1,73 @@
+package cmanager.util;
+
+import java.util.zip.Deflater;
+
+/** The available trade-offs between speed and size when writing ZIP files. */
+public enum CompressionProfile {
+    /** Store the data without compression. */
+    STORED("No compression (fastest)", Deflater.NO_COMPRESSION),
+
+    /** Compress the data with the fastest deflate level. */
+    FAST("Fast", Deflater.BEST_SPEED),
+
+    /** Compress the data with the level used by previous versions. */
+    DEFAULT("Default", 7),
+
+    /** Compress the data with the best deflate level. */
+    SMALL("Small (slowest)", Deflater.BEST_COMPRESSION);
+
+    /** The description to display to the user. */
+    private final String description;
+
+    /** The deflate level to use. */
+    private final int level;
+
+    /**
+     * Create a new profile.
+     *
+     * @param description The description to display to the user.
+     * @param level The deflate level to use.
+     */
+    CompressionProfile(final String description, final int level) {
+        this.description = description;
+        this.level = level;
+    }
+
+    /**
+     * Get the deflate level of the profile.
+     *
+     * @return The deflate level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Check whether the data is stored without compression.
+     *
+     * @return Whether the data is stored.
+     */
+    public boolean isStored() {
+        return this == STORED;
+    }
+
+    /**
+     * Get the profile with the given name.
+     *
+     * @param name The name of the profile, as returned by {@link #name()}.
+     * @return The corresponding profile, or {@link #DEFAULT} if the name is unknown.
+     */
+    public static CompressionProfile fromName(final String name) {
+        for (final CompressionProfile profile : values()) {
+            if (profile.name().equals(name)) {
+                return profile;
+            }
+        }
+        return DEFAULT;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -9,8 +9,20 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /** Utility methods for handling files. */
@@ -135,7 +147,118 @@ public class FileHelper {
      */
     private static void processZipFile(final String path, FileHelper.InputAction inputAction)
             throws Throwable {
-        processZipFile(new FileInputStream(path), inputAction);
+        try (ZipFile zipFile = new ZipFile(path)) {
+            if (inputAction instanceof ParsingInputAction) {
+                processZipFileParallel(zipFile, (ParsingInputAction<?>) inputAction);
+                return;
+            }
+
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+
+                try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                    if (zipEntry.getName().toLowerCase().endsWith(".zip")) {
+                        processZipFile(inputStream, inputAction);
+                    } else {
+                        inputAction.process(inputStream);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Process the entries of the given ZIP file concurrently.
+     *
+     * <p>The entries are inflated and parsed by a thread pool. To limit the memory usage, only a
+     * bounded number of entries is parsed ahead. The parsed results are merged on the calling
+     * thread in the order of the entries.
+     *
+     * @param zipFile The file to process.
+     * @param inputAction The actual data processor.
+     */
+    private static <T> void processZipFileParallel(
+            final ZipFile zipFile, final ParsingInputAction<T> inputAction) throws Throwable {
+        final int threadCount = new ThreadStore().getCores(Math.max(1, zipFile.size()));
+        final int maximumPending = threadCount * 2;
+        final ExecutorService service = Executors.newFixedThreadPool(threadCount);
+        final Deque<Future<T>> pending = new ArrayDeque<>(maximumPending);
+
+        try {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+
+                // Nested archives are processed in place to keep the order.
+                if (zipEntry.getName().toLowerCase().endsWith(".zip")) {
+                    while (!pending.isEmpty()) {
+                        mergeNext(pending, inputAction);
+                    }
+                    try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                        processZipFile(inputStream, inputAction);
+                    }
+                    continue;
+                }
+
+                if (pending.size() == maximumPending) {
+                    mergeNext(pending, inputAction);
+                }
+                pending.add(service.submit(() -> parseEntry(zipFile, zipEntry, inputAction)));
+            }
+
+            while (!pending.isEmpty()) {
+                mergeNext(pending, inputAction);
+            }
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * Parse the given ZIP entry.
+     *
+     * @param zipFile The file containing the entry.
+     * @param zipEntry The entry to parse.
+     * @param inputAction The actual data processor.
+     * @return The parsed data.
+     * @throws Exception Something went wrong with parsing the data.
+     */
+    private static <T> T parseEntry(
+            final ZipFile zipFile, final ZipEntry zipEntry, final ParsingInputAction<T> inputAction)
+            throws Exception {
+        try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+            return inputAction.parse(inputStream);
+        } catch (Exception | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+    /**
+     * Wait for the oldest pending parsing result and merge it.
+     *
+     * @param pending The pending parsing results, in the order of the entries.
+     * @param inputAction The actual data processor.
+     * @throws Throwable Parsing or merging the data failed.
+     */
+    private static <T> void mergeNext(
+            final Deque<Future<T>> pending, final ParsingInputAction<T> inputAction)
+            throws Throwable {
+        final T result;
+        try {
+            result = pending.removeFirst().get();
+        } catch (ExecutionException exception) {
+            throw exception.getCause();
+        }
+        inputAction.merge(result);
     }
 
     /**
@@ -177,7 +300,36 @@ public class FileHelper {
      */
     private static void processFile(final String path, FileHelper.InputAction inputAction)
             throws Throwable {
-        inputAction.process(new FileInputStream(path));
+        if (path.toLowerCase().endsWith(".gpx")) {
+            final ByteBuffer byteBuffer = mapFile(path);
+            if (byteBuffer != null) {
+                inputAction.process(byteBuffer);
+                return;
+            }
+        }
+
+        try (InputStream inputStream = new FileInputStream(path)) {
+            inputAction.process(inputStream);
+        }
+    }
+
+    /**
+     * Map the given file into memory for reading.
+     *
+     * @param path The file to map.
+     * @return The mapped file content or <code>null</code> if the file is too large to be mapped
+     *     into a single buffer.
+     * @throws IOException Something went wrong when mapping the file.
+     */
+    private static ByteBuffer mapFile(final String path) throws IOException {
+        // The mapping stays valid after closing the channel.
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            final long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
     }
 
     /**
@@ -226,5 +378,111 @@ public class FileHelper {
          * @throws Throwable Something went wrong with processing the data.
          */
         public abstract void process(InputStream inputStream) throws Throwable;
+
+        /**
+         * Process the given data which is completely available in memory, for example a
+         * memory-mapped file, and take care of saving the processed data.
+         *
+         * <p>By default, this will just process the data as a stream. Overwrite this method to
+         * work on the buffer directly.
+         *
+         * @param byteBuffer The data to process.
+         * @throws Throwable Something went wrong with processing the data.
+         */
+        public void process(final ByteBuffer byteBuffer) throws Throwable {
+            process(new ByteBufferInputStream(byteBuffer));
+        }
+    }
+
+    /**
+     * Data processing action which separates parsing the data from saving the parsed data.
+     *
+     * <p>This allows parsing multiple inputs concurrently. The parsed results are merged in the
+     * order of the inputs.
+     *
+     * @param <T> The type of the parsed data.
+     */
+    public abstract static class ParsingInputAction<T> extends InputAction {
+
+        /**
+         * Parse the given data. This might be called concurrently for different inputs.
+         *
+         * @param inputStream The data to parse.
+         * @return The parsed data.
+         * @throws Throwable Something went wrong with parsing the data.
+         */
+        public abstract T parse(InputStream inputStream) throws Throwable;
+
+        /**
+         * Parse the given data which is completely available in memory.
+         *
+         * <p>By default, this will just parse the data as a stream.
+         *
+         * @param byteBuffer The data to parse.
+         * @return The parsed data.
+         * @throws Throwable Something went wrong with parsing the data.
+         */
+        public T parse(final ByteBuffer byteBuffer) throws Throwable {
+            return parse(new ByteBufferInputStream(byteBuffer));
+        }
+
+        /**
+         * Save the given parsed data. This is called in the order of the inputs and never
+         * concurrently.
+         *
+         * @param result The parsed data.
+         * @throws Throwable Something went wrong with saving the data.
+         */
+        public abstract void merge(T result) throws Throwable;
+
+        @Override
+        public void process(final InputStream inputStream) throws Throwable {
+            merge(parse(inputStream));
+        }
+
+        @Override
+        public void process(final ByteBuffer byteBuffer) throws Throwable {
+            merge(parse(byteBuffer));
+        }
+    }
+
+    /** Input stream reading the remaining data of a byte buffer. */
+    private static class ByteBufferInputStream extends InputStream {
+
+        /** The buffer to read from. */
+        private final ByteBuffer byteBuffer;
+
+        /**
+         * Create a new stream for the given buffer.
+         *
+         * @param byteBuffer The buffer to read from. Its position will not be modified.
+         */
+        ByteBufferInputStream(final ByteBuffer byteBuffer) {
+            this.byteBuffer = byteBuffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return byteBuffer.hasRemaining() ? byteBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!byteBuffer.hasRemaining()) {
+                return -1;
+            }
+
+            final int count = Math.min(length, byteBuffer.remaining());
+            byteBuffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return byteBuffer.remaining();
+        }
     }
 }
@@ -1,30 +1,202 @@
 package cmanager.util;
 
 import cmanager.geo.Geocache;
+import cmanager.geo.GeocacheLog;
+import cmanager.geo.Waypoint;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 
-/** Wrapper for a geocache list state. */
+/**
+ * The change of a geocache list by a single action, which can be reverted.
+ *
+ * <p>Only the difference is saved instead of the complete list: the range of appended geocaches
+ * or the removed geocaches together with their former positions. Changes of the list which are
+ * not recorded have to append geocaches only, as this keeps the recorded positions valid.
+ */
 public class UndoAction {
 
-    /** The geocache list for the current state. */
-    private final List<Geocache> state;
+    /** The estimated number of bytes retained by any instance. */
+    private static final long BASE_SIZE = 48;
+
+    /** The estimated number of bytes retained for each removed geocache by the action itself. */
+    private static final long REMOVED_ENTRY_SIZE = 4 + 8;
+
+    /** The estimated number of bytes of a geocache without its texts, logs and waypoints. */
+    private static final long GEOCACHE_SIZE = 600;
+
+    /** The estimated number of bytes of a log or waypoint without its texts. */
+    private static final long CHILD_SIZE = 150;
+
+    /** The estimated number of bytes per character of a text. */
+    private static final long CHARACTER_SIZE = 2;
+
+    /** The index of the first appended geocache. */
+    private final int addedStart;
+
+    /** The number of appended geocaches. */
+    private final int addedCount;
+
+    /** The former indices of the removed geocaches, in ascending order. */
+    private final int[] removedIndices;
+
+    /** The removed geocaches, in the order of their indices. */
+    private final Geocache[] removedGeocaches;
+
+    /** The estimated number of bytes retained by the removed geocaches themselves. */
+    private final long removedGeocachesSize;
+
+    /**
+     * Create a new instance with the given values.
+     *
+     * @param addedStart The index of the first appended geocache.
+     * @param addedCount The number of appended geocaches.
+     * @param removedIndices The former indices of the removed geocaches, in ascending order.
+     * @param removedGeocaches The removed geocaches, in the order of their indices.
+     */
+    private UndoAction(
+            final int addedStart,
+            final int addedCount,
+            final int[] removedIndices,
+            final Geocache[] removedGeocaches) {
+        this.addedStart = addedStart;
+        this.addedCount = addedCount;
+        this.removedIndices = removedIndices;
+        this.removedGeocaches = removedGeocaches;
+
+        long size = 0;
+        for (final Geocache geocache : removedGeocaches) {
+            size += estimateSize(geocache);
+        }
+        this.removedGeocachesSize = size;
+    }
+
+    /**
+     * Record that geocaches have been appended to a list.
+     *
+     * @param start The size of the list before appending the geocaches.
+     * @param count The number of appended geocaches.
+     * @return The recorded action.
+     */
+    public static UndoAction added(final int start, final int count) {
+        return new UndoAction(start, count, new int[0], new Geocache[0]);
+    }
+
+    /**
+     * Remove the geocaches matching the given filter from the given list and record them.
+     *
+     * <p>The list is compacted in a single pass.
+     *
+     * @param list The list to remove the geocaches from.
+     * @param filter The filter returning <code>true</code> for the geocaches to remove.
+     * @return The recorded action.
+     */
+    public static UndoAction removeIf(
+            final List<Geocache> list, final Predicate<Geocache> filter) {
+        final int size = list.size();
+        int[] indices = new int[16];
+        final List<Geocache> geocaches = new ArrayList<>();
+
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            final Geocache geocache = list.get(read);
+            if (filter.test(geocache)) {
+                if (geocaches.size() == indices.length) {
+                    indices = Arrays.copyOf(indices, indices.length * 2);
+                }
+                indices[geocaches.size()] = read;
+                geocaches.add(geocache);
+            } else {
+                list.set(write++, geocache);
+            }
+        }
+        list.subList(write, size).clear();
+
+        return new UndoAction(
+                0,
+                0,
+                Arrays.copyOf(indices, geocaches.size()),
+                geocaches.toArray(new Geocache[geocaches.size()]));
+    }
+
+    /**
+     * Revert the action for the given list.
+     *
+     * @param list The list to revert the action for. This might be modified.
+     * @return The list with the action being reverted.
+     */
+    public List<Geocache> revert(final List<Geocache> list) {
+        if (addedCount > 0) {
+            list.subList(addedStart, addedStart + addedCount).clear();
+        }
+        if (removedIndices.length == 0) {
+            return list;
+        }
+
+        // Merge the removed geocaches back in a single pass.
+        final List<Geocache> result = new ArrayList<>(list.size() + removedIndices.length);
+        int next = 0;
+        for (int i = 0; i < removedIndices.length; i++) {
+            while (result.size() < removedIndices[i]) {
+                result.add(list.get(next++));
+            }
+            result.add(removedGeocaches[i]);
+        }
+        result.addAll(list.subList(next, list.size()));
+        return result;
+    }
 
     /**
-     * Create a new instance with the given list.
+     * Get the index of the first position of the list changed by this action or by reverting it.
      *
-     * @param list The geocache list for the current state.
+     * @return The first changed index or {@link Integer#MAX_VALUE} if the list is unchanged.
      */
-    public UndoAction(final List<Geocache> list) {
-        state = new ArrayList<>(list);
+    public int getFirstIndex() {
+        final int added = addedCount > 0 ? addedStart : Integer.MAX_VALUE;
+        return removedIndices.length > 0 ? Math.min(added, removedIndices[0]) : added;
+    }
+
+    /**
+     * Get the estimated number of bytes retained by this action, including the removed geocaches.
+     *
+     * @return The estimated size.
+     */
+    public long getSize() {
+        return BASE_SIZE + removedIndices.length * REMOVED_ENTRY_SIZE + removedGeocachesSize;
+    }
+
+    /**
+     * Estimate the number of bytes retained by the given geocache.
+     *
+     * <p>This is dominated by the listings and the logs, so only the larger texts are counted.
+     *
+     * @param geocache The geocache to estimate the size for.
+     * @return The estimated size.
+     */
+    static long estimateSize(final Geocache geocache) {
+        long characters =
+                length(geocache.getListing())
+                        + length(geocache.getListingShort())
+                        + length(geocache.getHint());
+        for (final GeocacheLog log : geocache.getLogs()) {
+            characters += length(log.getText());
+        }
+        for (final Waypoint waypoint : geocache.getWaypoints()) {
+            characters += length(waypoint.getDescription());
+        }
+
+        final int children = geocache.getLogs().size() + geocache.getWaypoints().size();
+        return GEOCACHE_SIZE + children * CHILD_SIZE + characters * CHARACTER_SIZE;
     }
 
     /**
-     * Get the saved state.
+     * Get the length of the given text.
      *
-     * @return The saved geocache list.
+     * @param text The text to get the length for.
+     * @return The length of the text or 0 if there is none.
      */
-    public List<Geocache> getState() {
-        return state;
+    private static int length(final String text) {
+        return text == null ? 0 : text.length();
     }
 }
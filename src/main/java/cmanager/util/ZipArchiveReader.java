@@ -0,0 +1,204 @@
+package cmanager.util;
+
+import cmanager.util.ZipArchiveWriter.CompressedEntry;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reader for the compressed entries of a ZIP file.
+ *
+ * <p>The entries are returned as stored in the archive, without inflating them. This allows to
+ * copy them to a new archive with {@link ZipArchiveWriter} without compressing them again. ZIP64
+ * archives and encrypted entries are not supported.
+ */
+public class ZipArchiveReader implements AutoCloseable {
+
+    /** The signature of a local file header. */
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    /** The signature of a central directory file header. */
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    /** The signature of the end of the central directory. */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /** The size of the end of the central directory without the comment. */
+    private static final int END_SIZE = 22;
+
+    /** The size of a local file header without the name and the extra field. */
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    /** The size of a central directory file header without the variable fields. */
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    /** The flag indicating encrypted entries. */
+    private static final int ENCRYPTED_FLAG = 0x0001;
+
+    /** The file to read from. */
+    private final FileChannel channel;
+
+    /** The locations of the supported entries by their name. */
+    private final Map<String, EntryLocation> entries = new HashMap<>();
+
+    /**
+     * Open the given file and read its central directory.
+     *
+     * @param path The file to read.
+     * @throws IOException The file could not be read or is not a supported ZIP file.
+     */
+    public ZipArchiveReader(final Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            readCentralDirectory();
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Read the compressed entry with the given name.
+     *
+     * @param name The name of the entry.
+     * @return The compressed entry, or <code>null</code> if there is no such supported entry.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    public CompressedEntry read(final String name) throws IOException {
+        final EntryLocation location = entries.get(name);
+        if (location == null) {
+            return null;
+        }
+
+        // The length of the extra field may differ from the central directory.
+        final ByteBuffer header = read(location.headerOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local file header for " + name);
+        }
+        final long dataOffset =
+                location.headerOffset
+                        + LOCAL_HEADER_SIZE
+                        + Short.toUnsignedInt(header.getShort(26))
+                        + Short.toUnsignedInt(header.getShort(28));
+
+        final ByteBuffer data = read(dataOffset, location.compressedSize);
+        return new CompressedEntry(
+                name, location.method, location.crc, location.size, data.array());
+    }
+
+    /**
+     * Close the underlying file.
+     *
+     * @throws IOException Something went wrong when closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Find the central directory and record the locations of the entries.
+     *
+     * @throws IOException The file could not be read or is not a supported ZIP file.
+     */
+    private void readCentralDirectory() throws IOException {
+        // The end of the central directory is followed by a comment of up to 65535 bytes.
+        final long size = channel.size();
+        final int tailSize = (int) Math.min(size, END_SIZE + 0xFFFF);
+        final ByteBuffer tail = read(size - tailSize, tailSize);
+        int end = tailSize - END_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_SIGNATURE) {
+            end--;
+        }
+        if (end < 0) {
+            throw new IOException("Missing end of central directory.");
+        }
+
+        final int entryCount = Short.toUnsignedInt(tail.getShort(end + 10));
+        final int directorySize = tail.getInt(end + 12);
+        final long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        if (entryCount == 0xFFFF || directorySize == -1 || directoryOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 archives are not supported.");
+        }
+
+        final ByteBuffer directory = read(directoryOffset, directorySize);
+        int position = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid central directory.");
+            }
+
+            final int flags = Short.toUnsignedInt(directory.getShort(position + 8));
+            final int method = Short.toUnsignedInt(directory.getShort(position + 10));
+            final int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            final int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            final int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+            final String name =
+                    new String(
+                            directory.array(),
+                            position + CENTRAL_HEADER_SIZE,
+                            nameLength,
+                            StandardCharsets.UTF_8);
+
+            final EntryLocation location = new EntryLocation();
+            location.method = method;
+            location.crc = Integer.toUnsignedLong(directory.getInt(position + 16));
+            location.compressedSize = directory.getInt(position + 20);
+            location.size = Integer.toUnsignedLong(directory.getInt(position + 24));
+            location.headerOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+
+            if ((flags & ENCRYPTED_FLAG) == 0
+                    && (method == ZipEntry.STORED || method == ZipEntry.DEFLATED)
+                    && location.compressedSize >= 0) {
+                entries.put(name, location);
+            }
+
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Read the given range of the file.
+     *
+     * @param offset The offset to start reading at.
+     * @param length The number of bytes to read.
+     * @return The read data as a little-endian buffer backed by an array.
+     * @throws IOException The file could not be read or ends before the given range.
+     */
+    private ByteBuffer read(final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+        return buffer;
+    }
+
+    /** The location and metadata of an entry. */
+    private static class EntryLocation {
+
+        /** The compression method. */
+        private int method;
+
+        /** The CRC-32 checksum of the uncompressed data. */
+        private long crc;
+
+        /** The size of the compressed data. */
+        private int compressedSize;
+
+        /** The size of the uncompressed data. */
+        private long size;
+
+        /** The offset of the local file header. */
+        private long headerOffset;
+    }
+}
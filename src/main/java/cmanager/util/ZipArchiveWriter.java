@@ -0,0 +1,350 @@
+package cmanager.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writer for ZIP files whose entries have been compressed beforehand.
+ *
+ * <p>In contrast to {@link java.util.zip.ZipOutputStream}, compressing the entries is decoupled
+ * from writing them. This allows to compress multiple entries concurrently and to write them in
+ * order afterwards. ZIP64 archives are not supported.
+ */
+public class ZipArchiveWriter implements AutoCloseable {
+
+    /** The signature of a local file header. */
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    /** The signature of a central directory file header. */
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    /** The signature of the end of the central directory. */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /** The flag indicating UTF-8 encoded entry names. */
+    private static final int UTF8_FLAG = 0x0800;
+
+    /** The maximum number of entries without ZIP64. */
+    private static final int MAXIMUM_ENTRIES = 0xFFFF;
+
+    /** The maximum sizes and offsets without ZIP64. */
+    private static final long MAXIMUM_SIZE = 0xFFFFFFFFL;
+
+    /** The stream to write to. */
+    private final OutputStream outputStream;
+
+    /** The central directory records of the written entries. */
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+
+    /** The number of written entries. */
+    private int entryCount = 0;
+
+    /** The number of bytes written so far. */
+    private long offset = 0;
+
+    /** The modification time to use for all entries, in MS-DOS format. */
+    private final long dosTime = toDosTime(LocalDateTime.now());
+
+    /**
+     * Create a new writer for the given stream.
+     *
+     * @param outputStream The stream to write to. This will be closed together with the writer.
+     */
+    public ZipArchiveWriter(final OutputStream outputStream) {
+        this.outputStream = new BufferedOutputStream(outputStream, 64 * 1024);
+    }
+
+    /**
+     * Compress the data written by the given writer.
+     *
+     * @param name The name of the entry.
+     * @param profile The compression profile to use.
+     * @param contentWriter The writer providing the uncompressed data.
+     * @return The compressed entry.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public static CompressedEntry compress(
+            final String name,
+            final CompressionProfile profile,
+            final ContentWriter contentWriter)
+            throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream(64 * 1024);
+
+        if (profile.isStored()) {
+            final ChecksumOutputStream checksumStream = new ChecksumOutputStream(data);
+            contentWriter.write(checksumStream);
+            checksumStream.flush();
+            return new CompressedEntry(
+                    name,
+                    ZipEntry.STORED,
+                    checksumStream.crc.getValue(),
+                    checksumStream.size,
+                    data.toByteArray());
+        }
+
+        final Deflater deflater = new Deflater(profile.getLevel(), true);
+        try {
+            final DeflaterOutputStream deflaterStream =
+                    new DeflaterOutputStream(data, deflater, 64 * 1024);
+            final ChecksumOutputStream checksumStream = new ChecksumOutputStream(deflaterStream);
+            contentWriter.write(checksumStream);
+            checksumStream.flush();
+            deflaterStream.finish();
+            return new CompressedEntry(
+                    name,
+                    ZipEntry.DEFLATED,
+                    checksumStream.crc.getValue(),
+                    checksumStream.size,
+                    data.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Write the given entry to the archive.
+     *
+     * @param entry The entry to write.
+     * @throws IOException Something went wrong when writing the data or the archive would require
+     *     ZIP64.
+     */
+    public void write(final CompressedEntry entry) throws IOException {
+        if (entryCount == MAXIMUM_ENTRIES
+                || offset > MAXIMUM_SIZE
+                || entry.size > MAXIMUM_SIZE
+                || entry.data.length > MAXIMUM_SIZE) {
+            throw new IOException("ZIP64 archives are not supported.");
+        }
+
+        final byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        final int version = entry.method == ZipEntry.STORED ? 10 : 20;
+
+        // The central directory record, referring to the local header.
+        writeInt(centralDirectory, CENTRAL_HEADER_SIGNATURE);
+        writeShort(centralDirectory, version);
+        writeHeader(centralDirectory, entry, version, name.length);
+        writeShort(centralDirectory, 0); // Comment length.
+        writeShort(centralDirectory, 0); // Disk number.
+        writeShort(centralDirectory, 0); // Internal attributes.
+        writeInt(centralDirectory, 0); // External attributes.
+        writeInt(centralDirectory, offset);
+        centralDirectory.write(name);
+
+        // The local header, followed by the data.
+        final ByteArrayOutputStream header = new ByteArrayOutputStream(30 + name.length);
+        writeInt(header, LOCAL_HEADER_SIGNATURE);
+        writeHeader(header, entry, version, name.length);
+        header.write(name);
+        header.writeTo(outputStream);
+        outputStream.write(entry.data);
+
+        offset += header.size() + entry.data.length;
+        entryCount++;
+    }
+
+    /**
+     * Write the central directory and close the underlying stream.
+     *
+     * @throws IOException Something went wrong when writing the data.
+     */
+    @Override
+    public void close() throws IOException {
+        if (offset > MAXIMUM_SIZE) {
+            outputStream.close();
+            throw new IOException("ZIP64 archives are not supported.");
+        }
+
+        final ByteArrayOutputStream end = new ByteArrayOutputStream(22);
+        writeInt(end, END_SIGNATURE);
+        writeShort(end, 0); // Number of this disk.
+        writeShort(end, 0); // Disk with the central directory.
+        writeShort(end, entryCount);
+        writeShort(end, entryCount);
+        writeInt(end, centralDirectory.size());
+        writeInt(end, offset);
+        writeShort(end, 0); // Comment length.
+
+        centralDirectory.writeTo(outputStream);
+        end.writeTo(outputStream);
+        outputStream.close();
+    }
+
+    /**
+     * Write the fields shared by the local header and the central directory record, starting with
+     * the version needed to extract.
+     *
+     * @param out The stream to write to.
+     * @param entry The entry to write the fields for.
+     * @param version The version needed to extract the entry.
+     * @param nameLength The length of the encoded name.
+     */
+    private void writeHeader(
+            final ByteArrayOutputStream out,
+            final CompressedEntry entry,
+            final int version,
+            final int nameLength) {
+        writeShort(out, version);
+        writeShort(out, UTF8_FLAG);
+        writeShort(out, entry.method);
+        writeInt(out, dosTime);
+        writeInt(out, entry.crc);
+        writeInt(out, entry.data.length);
+        writeInt(out, entry.size);
+        writeShort(out, nameLength);
+        writeShort(out, 0); // Extra field length.
+    }
+
+    /**
+     * Write the given value as two little-endian bytes.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     */
+    private static void writeShort(final ByteArrayOutputStream out, final int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    /**
+     * Write the given value as four little-endian bytes.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     */
+    private static void writeInt(final ByteArrayOutputStream out, final long value) {
+        writeShort(out, (int) (value & 0xFFFF));
+        writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+    }
+
+    /**
+     * Convert the given time to the MS-DOS format used by ZIP files.
+     *
+     * @param time The time to convert.
+     * @return The packed date in the upper and the packed time in the lower 16 bits.
+     */
+    private static long toDosTime(final LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | (time.getMonthValue() << 21)
+                | (time.getDayOfMonth() << 16)
+                | (time.getHour() << 11)
+                | (time.getMinute() << 5)
+                | (time.getSecond() >> 1);
+    }
+
+    /** Provider for the uncompressed data of an entry. */
+    public interface ContentWriter {
+
+        /**
+         * Write the uncompressed data to the given stream.
+         *
+         * @param outputStream The stream to write to. This must not be closed.
+         * @throws IOException Something went wrong when writing the data.
+         */
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    /** An entry which is ready to be written to the archive. */
+    public static class CompressedEntry {
+
+        /** The name of the entry. */
+        private final String name;
+
+        /** The compression method, either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}. */
+        private final int method;
+
+        /** The CRC-32 checksum of the uncompressed data. */
+        private final long crc;
+
+        /** The size of the uncompressed data. */
+        private final long size;
+
+        /** The compressed data. */
+        private final byte[] data;
+
+        /**
+         * Create a new entry.
+         *
+         * @param name The name of the entry.
+         * @param method The compression method.
+         * @param crc The CRC-32 checksum of the uncompressed data.
+         * @param size The size of the uncompressed data.
+         * @param data The compressed data.
+         */
+        public CompressedEntry(
+                final String name,
+                final int method,
+                final long crc,
+                final long size,
+                final byte[] data) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        /**
+         * Get the name of the entry.
+         *
+         * @return The name of the entry.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the compressed data.
+         *
+         * @return The compressed data.
+         */
+        public byte[] getCompressedData() {
+            return data;
+        }
+    }
+
+    /** Stream calculating the checksum and size of the data written to it. */
+    private static class ChecksumOutputStream extends FilterOutputStream {
+
+        /** The checksum of the written data. */
+        private final CRC32 crc = new CRC32();
+
+        /** The number of written bytes. */
+        private long size = 0;
+
+        /**
+         * Create a new stream.
+         *
+         * @param outputStream The stream to forward the data to.
+         */
+        private ChecksumOutputStream(final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(final int value) throws IOException {
+            out.write(value);
+            crc.update(value);
+            size++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length)
+                throws IOException {
+            out.write(bytes, offset, length);
+            crc.update(bytes, offset, length);
+            size += length;
+        }
+    }
+}
@@ -1,75 +1,36 @@
 package cmanager.xml;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 
-/** Abstraction for buffered reading. */
-class BufferReadAbstraction {
-
-    /** The maximum size of the buffer. */
-    private final int LIMIT = 1024 * 1024 * 10;
-
-    /** Internal character buffer used during reading data from the abstracted buffer. */
-    private final char[] characterBuffer = new char[LIMIT];
-
-    /** The internal buffered reader. */
-    private final BufferedReader bufferedReader;
-
-    /**
-     * Create a new instance to read the given stream in a buffered way.
-     *
-     * @param inputStream The stream to work on.
-     */
-    public BufferReadAbstraction(InputStream inputStream) {
-        bufferedReader =
-                new BufferedReader(
-                        new InputStreamReader(inputStream, StandardCharsets.UTF_8), LIMIT);
-    }
-
-    /**
-     * Create a new instance to read the given string in a buffered way.
-     *
-     * @param string The string to work on.
-     */
-    public BufferReadAbstraction(final String string) {
-        bufferedReader =
-                new BufferedReader(
-                        new InputStreamReader(
-                                new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)),
-                                StandardCharsets.UTF_8));
-    }
+/**
+ * Abstraction for buffered reading.
+ *
+ * <p>All index-based methods are relative to the current cursor position. Depending on the
+ * implementation, the indices refer to characters or to bytes of UTF-8 encoded data. The markup
+ * characters of XML are all ASCII characters and thus have the same value in both cases.
+ */
+abstract class BufferReadAbstraction {
 
     /**
      * Get the character at the given position.
      *
-     * <p>This is the same as reading the first `index` characters from the buffer and only
-     * retrieving the last character of it afterwards.
+     * <p>For byte-based implementations, non-ASCII bytes are reported as characters with a value
+     * of at least <code>0x80</code>, which never match any markup character.
      *
      * @param index The index of the character to get.
      * @return The requested character.
+     * @throws java.io.EOFException The end of the data has been reached before the given index.
      * @throws IOException Retrieving the character is not possible.
      */
-    public char charAt(final int index) throws IOException {
-        bufferedReader.mark(index + 1);
-        bufferedReader.read(characterBuffer, 0, index + 1);
-        bufferedReader.reset();
-
-        return characterBuffer[index];
-    }
+    public abstract char charAt(int index) throws IOException;
 
     /**
-     * Check whether the buffer is ready to be read.
+     * Check whether there is data left to be read.
      *
-     * @return Whether the buffer is ready to be read.
+     * @return Whether there is data left to be read.
      * @throws IOException Accessing the buffer is not possible.
      */
-    public boolean available() throws IOException {
-        return bufferedReader.ready();
-    }
+    public abstract boolean available() throws IOException;
 
     /**
      * Skip the next character.
@@ -77,7 +38,7 @@ class BufferReadAbstraction {
      * @throws IOException Skipping the character is not possible.
      */
     public void deleteChar() throws IOException {
-        bufferedReader.skip(1);
+        deleteUntil(1);
     }
 
     /**
@@ -86,88 +47,94 @@ class BufferReadAbstraction {
      * @param end The number of characters to skip.
      * @throws IOException Skipping the characters has not been completely successful.
      */
-    public void deleteUntil(final int end) throws IOException {
-        bufferedReader.skip(end);
-    }
+    public abstract void deleteUntil(int end) throws IOException;
 
     /**
-     * Get the requested substring. The buffer will start with the next character after the end
-     * position afterwards.
+     * Get the requested substring. This will not consume any data.
      *
      * @param start The index to start at.
      * @param end The index to end with.
-     * @return The requested substring.
+     * @return The requested substring. This might be shorter than requested if the end of the
+     *     data has been reached.
      * @throws IOException Retrieving the substring is not possible.
      */
-    public String substring(final int start, final int end) throws IOException {
-        bufferedReader.mark(end + 1);
-        bufferedReader.read(characterBuffer, 0, end + 1);
-        bufferedReader.reset();
+    public abstract String substring(int start, int end) throws IOException;
 
-        return new String(characterBuffer, start, end - start);
+    /**
+     * Get the requested substring. This will not consume any data.
+     *
+     * <p>In contrast to {@link #substring(int, int)}, implementations might defer the decoding
+     * until the value is actually used.
+     *
+     * @param start The index to start at.
+     * @param end The index to end with.
+     * @return The requested substring.
+     * @throws IOException Retrieving the substring is not possible.
+     */
+    public CharSequence token(final int start, final int end) throws IOException {
+        return substring(start, end);
     }
 
     /**
-     * Determine the index of the given string. The buffer will start at the limit afterwards.
+     * Append the given number of characters to the given builder. This will not consume any data.
      *
-     * @param str The string to search for.
-     * @return The requested index or <code>-1</code> if there has not been any match.
-     * @throws IOException Determining the index has not been possible.
+     * @param target The builder to append to.
+     * @param end The number of characters to append.
+     * @throws IOException Retrieving the characters is not possible.
      */
-    public int indexOf(final String str) throws IOException {
-        // Mark the end of the buffer.
-        bufferedReader.mark(LIMIT);
+    public void copyTo(final StringBuilder target, final int end) throws IOException {
+        target.append(substring(0, end));
+    }
 
-        int offset = 0;
-        int size = 200;
+    /**
+     * Get the shared instance of the requested name. This will not consume any data.
+     *
+     * @param start The index to start at.
+     * @param end The index to end with.
+     * @param symbols The table to look the name up in.
+     * @return The shared instance of the name.
+     * @throws IOException Retrieving the name is not possible.
+     */
+    public String symbol(final int start, final int end, final SymbolTable symbols)
+            throws IOException {
+        return symbols.intern(substring(start, end));
+    }
 
-        while (true) {
-            // We have reached the end of the buffer.
-            if (offset + size > LIMIT) {
-                bufferedReader.reset();
+    /**
+     * Check whether the given string is found at the given index. This will not consume any data.
+     *
+     * @param index The index to check at.
+     * @param str The string to compare with.
+     * @return The number of indices occupied by the string if it matches or <code>-1</code>
+     *     otherwise.
+     * @throws IOException Reading the data failed.
+     */
+    public int regionMatches(final int index, final String str) throws IOException {
+        final int length = str.length();
+        for (int i = 0; i < length; i++) {
+            if (charAt(index + i) != str.charAt(i)) {
                 return -1;
             }
-
-            // Read the specified number of characters.
-            final int read = bufferedReader.read(characterBuffer, offset, size);
-            offset += read;
-            size = size * 2;
-
-            // Check for a match.
-            final int len = str.length();
-            for (int j = 0; j < offset; j++) {
-                if (characterBuffer[j] == str.charAt(0)) {
-                    boolean match = true;
-                    for (int i = 1; i < len && j + i < offset; i++) {
-                        if (characterBuffer[j + i] != str.charAt(i)) {
-                            match = false;
-                            break;
-                        }
-                    }
-                    if (match) {
-                        bufferedReader.reset();
-                        return j;
-                    }
-                }
-            }
         }
+        return length;
     }
 
     /**
-     * Convert the buffer to a string builder.
+     * Determine the index of the given string. This will not consume any data.
+     *
+     * @param str The string to search for.
+     * @return The requested index or <code>-1</code> if there has not been any match.
+     * @throws IOException Determining the index has not been possible.
+     */
+    public abstract int indexOf(String str) throws IOException;
+
+    /**
+     * Convert the remaining data to a string builder. This will consume all data.
      *
      * @return The string builder for the current buffer.
      * @throws IOException Converting the buffer failed.
      */
-    public StringBuilder toStringBuilder() throws IOException {
-        final StringBuilder stringBuilder = new StringBuilder();
-        final char[] buffer = new char[1024 * 1024];
-        int readChars;
-        while ((readChars = bufferedReader.read(buffer)) > 0) {
-            stringBuilder.append(buffer, 0, readChars);
-        }
-        return stringBuilder;
-    }
+    public abstract StringBuilder toStringBuilder() throws IOException;
 
     /**
      * Get up to <code>max</code> characters from the start of the buffer.
@@ -176,13 +143,7 @@ class BufferReadAbstraction {
      * @return The head of the current buffer, with not more than <code>max</code> characters.
      * @throws IOException Retrieving the head failed.
      */
-    public String getHead(int max) throws IOException {
-        max = Math.min(max, LIMIT - 1);
-
-        bufferedReader.mark(max);
-        max = bufferedReader.read(characterBuffer, 0, max);
-        bufferedReader.reset();
-
-        return new String(characterBuffer, 0, max);
+    public String getHead(final int max) throws IOException {
+        return substring(0, max);
     }
 }
@@ -14,6 +14,66 @@ abstract class BufferWriteAbstraction {
      */
     public abstract BufferWriteAbstraction append(String string) throws IOException;
 
+    /**
+     * Escape the given string for XML and append it to the buffer.
+     *
+     * @param string The string to escape and append.
+     * @return The current abstraction instance.
+     * @throws IOException The string could not be appended.
+     */
+    public abstract BufferWriteAbstraction appendEscaped(String string) throws IOException;
+
+    /**
+     * Append the indentation for the given level, being two spaces per level.
+     *
+     * @param level The level to indent for.
+     * @return The current abstraction instance.
+     * @throws IOException The indentation could not be appended.
+     */
+    public BufferWriteAbstraction appendIndentation(final int level) throws IOException {
+        for (int i = 0; i < level; i++) {
+            append("  ");
+        }
+        return this;
+    }
+
+    /**
+     * Append the start of a start tag, id est <code>&lt;name</code>.
+     *
+     * @param name The name of the element.
+     * @return The current abstraction instance.
+     * @throws IOException The tag could not be appended.
+     */
+    public BufferWriteAbstraction appendStartTag(final String name) throws IOException {
+        return append("<").append(name);
+    }
+
+    /**
+     * Append an end tag, followed by a line break.
+     *
+     * @param name The name of the element.
+     * @return The current abstraction instance.
+     * @throws IOException The tag could not be appended.
+     */
+    public BufferWriteAbstraction appendEndTag(final String name) throws IOException {
+        return append("</").append(name).append(">\n");
+    }
+
+    /**
+     * Create an empty in-memory buffer with the same settings, which can be filled independently
+     * and appended to this buffer afterwards.
+     *
+     * @return The new buffer.
+     */
+    public abstract BufferWriteAbstraction createBuffer();
+
+    /**
+     * Write the buffered data to the underlying output, if there is any.
+     *
+     * @throws IOException The data could not be written.
+     */
+    public abstract void flush() throws IOException;
+
     /**
      * Convert the buffer to a string.
      *
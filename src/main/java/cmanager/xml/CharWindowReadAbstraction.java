@@ -0,0 +1,259 @@
+package cmanager.xml;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reading of character data.
+ *
+ * <p>The data is read into a character window which is refilled on demand. All index-based
+ * methods are relative to the current cursor position, so peeking at a character or substring
+ * only costs position arithmetic instead of re-reading the data.
+ */
+class CharWindowReadAbstraction extends BufferReadAbstraction {
+
+    /** The initial size of the character window when reading from a stream. */
+    private static final int INITIAL_WINDOW_SIZE = 64 * 1024;
+
+    /** The reader to refill the window from or <code>null</code> if there is no more data. */
+    private Reader reader;
+
+    /** The character window holding the data which has been read, but not yet consumed. */
+    private char[] window;
+
+    /** The position of the cursor inside the window, id est the next unconsumed character. */
+    private int position = 0;
+
+    /** The end of the valid data inside the window. */
+    private int limit = 0;
+
+    /**
+     * Create a new instance to read the given stream in a buffered way.
+     *
+     * @param inputStream The stream to work on.
+     */
+    public CharWindowReadAbstraction(InputStream inputStream) {
+        reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        window = new char[INITIAL_WINDOW_SIZE];
+    }
+
+    /**
+     * Create a new instance to read the given string in a buffered way.
+     *
+     * <p>The window will contain the complete string, so no further allocations are required.
+     *
+     * @param string The string to work on.
+     */
+    public CharWindowReadAbstraction(final String string) {
+        reader = null;
+        window = string.toCharArray();
+        limit = window.length;
+    }
+
+    /**
+     * Make sure that at least the given number of characters is available inside the window.
+     *
+     * <p>This will move the remaining data to the start of the window and grow the window if
+     * required. The window is grown whenever the requested data would fill more than half of it,
+     * which makes sure that each refill reads a reasonable amount of new data.
+     *
+     * @param count The number of characters required.
+     * @return Whether the requested number of characters is available. This will only be
+     *     <code>false</code> if the end of the data has been reached.
+     * @throws IOException Reading the data failed.
+     */
+    private boolean ensure(final int count) throws IOException {
+        if (limit - position >= count) {
+            return true;
+        }
+        if (reader == null) {
+            return false;
+        }
+
+        // Move the unconsumed data to the start of the window.
+        final int remaining = limit - position;
+        if (count > window.length / 2) {
+            int size = window.length;
+            while (count > size / 2) {
+                size *= 2;
+            }
+            final char[] newWindow = new char[size];
+            System.arraycopy(window, position, newWindow, 0, remaining);
+            window = newWindow;
+        } else if (position > 0) {
+            System.arraycopy(window, position, window, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        // Fill the free part of the window.
+        while (limit < count) {
+            final int read = reader.read(window, limit, window.length - limit);
+            if (read < 0) {
+                // The stream belongs to the caller, which might continue reading from it, for
+                // example with the next entry of a ZIP stream.
+                reader = null;
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    /**
+     * Get the character at the given position.
+     *
+     * @param index The index of the character to get.
+     * @return The requested character.
+     * @throws EOFException The end of the data has been reached before the given index.
+     * @throws IOException Retrieving the character is not possible.
+     */
+    @Override
+    public char charAt(final int index) throws IOException {
+        if (!ensure(index + 1)) {
+            throw new EOFException();
+        }
+
+        return window[position + index];
+    }
+
+    /**
+     * Check whether there is data left to be read.
+     *
+     * @return Whether there is data left to be read.
+     * @throws IOException Accessing the buffer is not possible.
+     */
+    @Override
+    public boolean available() throws IOException {
+        return ensure(1);
+    }
+
+    /**
+     * Skip the given amount of characters.
+     *
+     * @param end The number of characters to skip.
+     * @throws IOException Skipping the characters has not been completely successful.
+     */
+    @Override
+    public void deleteUntil(final int end) throws IOException {
+        ensure(end);
+        position += Math.min(end, limit - position);
+    }
+
+    /**
+     * Get the requested substring. This will not consume any data.
+     *
+     * @param start The index to start at.
+     * @param end The index to end with.
+     * @return The requested substring. This might be shorter than requested if the end of the
+     *     data has been reached.
+     * @throws IOException Retrieving the substring is not possible.
+     */
+    @Override
+    public String substring(final int start, final int end) throws IOException {
+        ensure(end);
+        final int available = Math.min(end, limit - position);
+
+        return available <= start ? "" : new String(window, position + start, available - start);
+    }
+
+    /**
+     * Append the given number of characters to the given builder. This will not consume any data.
+     *
+     * <p>The characters are copied from the window without creating an intermediate string.
+     *
+     * @param target The builder to append to.
+     * @param end The number of characters to append.
+     * @throws IOException Retrieving the characters is not possible.
+     */
+    @Override
+    public void copyTo(final StringBuilder target, final int end) throws IOException {
+        ensure(end);
+        target.append(window, position, Math.min(end, limit - position));
+    }
+
+    /**
+     * Get the shared instance of the requested name. This will not consume any data.
+     *
+     * <p>Names which are known already are found without creating a string.
+     *
+     * @param start The index to start at.
+     * @param end The index to end with.
+     * @param symbols The table to look the name up in.
+     * @return The shared instance of the name.
+     * @throws IOException Retrieving the name is not possible.
+     */
+    @Override
+    public String symbol(final int start, final int end, final SymbolTable symbols)
+            throws IOException {
+        ensure(end);
+        final int available = Math.min(end, limit - position);
+
+        return available <= start
+                ? ""
+                : symbols.intern(window, position + start, position + available);
+    }
+
+    /**
+     * Determine the index of the given string. This will not consume any data.
+     *
+     * <p>The search is resumed after each refill of the window, so each character is only scanned
+     * once, regardless of the distance to the match.
+     *
+     * @param str The string to search for.
+     * @return The requested index or <code>-1</code> if there has not been any match.
+     * @throws IOException Determining the index has not been possible.
+     */
+    @Override
+    public int indexOf(final String str) throws IOException {
+        final int len = str.length();
+        final char first = str.charAt(0);
+        int from = 0;
+
+        while (true) {
+            // Check for a match inside the data which has not been searched yet.
+            final int available = limit - position;
+            for (int j = from; j + len <= available; j++) {
+                if (window[position + j] != first) {
+                    continue;
+                }
+                boolean match = true;
+                for (int i = 1; i < len; i++) {
+                    if (window[position + j + i] != str.charAt(i)) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) {
+                    return j;
+                }
+            }
+            from = Math.max(from, available - len + 1);
+
+            // Read more data or stop if we have reached the end of the data.
+            if (!ensure(available + 1)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Convert the remaining data to a string builder. This will consume all data.
+     *
+     * @return The string builder for the current buffer.
+     * @throws IOException Converting the buffer failed.
+     */
+    @Override
+    public StringBuilder toStringBuilder() throws IOException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        while (available()) {
+            stringBuilder.append(window, position, limit - position);
+            position = limit;
+        }
+        return stringBuilder;
+    }
+}
@@ -1,23 +1,61 @@
 package cmanager.xml;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import org.apache.commons.text.StringEscapeUtils;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
 
-/** Container for a XML element. */
+/**
+ * Container for a XML element.
+ *
+ * <p>To keep large trees small, the children are stored inside an array and the attributes as
+ * alternating names and values inside a second array. Both arrays are only allocated when the
+ * first child or attribute is added.
+ */
 public class Element {
 
+    /** The shared array for elements without children. */
+    private static final Element[] NO_CHILDREN = new Element[0];
+
+    /** The shared array for elements without attributes. */
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
     /** The name of the element. */
     private String elementName = null;
 
-    /** The element body. */
-    private String body = null;
+    /**
+     * The element body as found in the XML data, with the XML entities still being escaped.
+     *
+     * <p>This is <code>null</code> if the body has been set in its decoded form.
+     */
+    private String rawBody = null;
 
-    /** The child elements of the element. */
-    private final List<Element> children = new ArrayList<>();
+    /**
+     * The decoded element body.
+     *
+     * <p>For raw bodies, this is <code>null</code> until the body has been requested.
+     */
+    private String decodedBody = null;
+
+    /** The child elements of the element, followed by unused slots. */
+    private Element[] children = NO_CHILDREN;
+
+    /** The number of child elements. */
+    private int childCount = 0;
+
+    /**
+     * The attributes of the element, followed by unused slots.
+     *
+     * <p>The name of each attribute is followed by its value.
+     */
+    private String[] attributes = NO_ATTRIBUTES;
 
-    /** The attributes of the element. */
-    private final List<XmlAttribute> attributes = new ArrayList<>();
+    /** The number of attributes. */
+    private int attributeCount = 0;
 
     /** Create an unitialized element. */
     public Element() {}
@@ -35,11 +73,11 @@ public class Element {
      * Create a named element with a string body.
      *
      * @param name The element name.
-     * @param body The element body.
+     * @param body The (unescaped) element body.
      */
     public Element(final String name, final String body) {
         setName(name);
-        setBody(body);
+        setUnescapedBody(body);
     }
 
     /**
@@ -50,7 +88,7 @@ public class Element {
      */
     public Element(final String name, final Double body) {
         setName(name);
-        setBody(body != null ? body.toString() : null);
+        setUnescapedBody(body != null ? body.toString() : null);
     }
 
     /**
@@ -61,7 +99,7 @@ public class Element {
      */
     public Element(final String name, final Integer body) {
         setName(name);
-        setBody(body != null ? body.toString() : null);
+        setUnescapedBody(body != null ? body.toString() : null);
     }
 
     /**
@@ -72,7 +110,7 @@ public class Element {
      */
     public Element(final String name, final Boolean body) {
         setName(name);
-        setBody(body != null ? body.toString() : null);
+        setUnescapedBody(body != null ? body.toString() : null);
     }
 
     /**
@@ -111,8 +149,8 @@ public class Element {
      * @return Whether the element has an attribute with the given value.
      */
     public boolean attrIs(final String attr, final String is) {
-        for (final XmlAttribute attribute : attributes) {
-            if (attribute.is(attr, is)) {
+        for (int i = 0; i < attributeCount * 2; i += 2) {
+            if (attributes[i].equals(attr) && Objects.equals(attributes[i + 1], is)) {
                 return true;
             }
         }
@@ -125,16 +163,44 @@ public class Element {
      * @param child The element to add.
      */
     public void add(final Element child) {
-        children.add(child);
+        if (childCount == children.length) {
+            children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+        }
+        children[childCount++] = child;
     }
 
     /**
      * Get all child elements.
      *
-     * @return The children.
+     * @return A read-only view of the children.
      */
     public List<Element> getChildren() {
-        return children;
+        return new ChildList();
+    }
+
+    /**
+     * Get the number of child elements.
+     *
+     * @return The number of children.
+     */
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Remove all children matching the given filter.
+     *
+     * @param filter The filter deciding which children to remove.
+     */
+    void removeChildren(final Predicate<Element> filter) {
+        int kept = 0;
+        for (int i = 0; i < childCount; i++) {
+            if (!filter.test(children[i])) {
+                children[kept++] = children[i];
+            }
+        }
+        Arrays.fill(children, kept, childCount, null);
+        childCount = kept;
     }
 
     /**
@@ -144,9 +210,9 @@ public class Element {
      * @return The requested element or <code>null</code> if it could not be found.
      */
     public Element getChild(final String name) {
-        for (final Element element : children) {
-            if (element.is(name)) {
-                return element;
+        for (int i = 0; i < childCount; i++) {
+            if (children[i].is(name)) {
+                return children[i];
             }
         }
         return null;
@@ -160,9 +226,9 @@ public class Element {
      */
     public List<Element> getChildren(final String name) {
         final List<Element> matching = new ArrayList<>();
-        for (final Element element : children) {
-            if (element.is(name)) {
-                matching.add(element);
+        for (int i = 0; i < childCount; i++) {
+            if (children[i].is(name)) {
+                matching.add(children[i]);
             }
         }
         return matching;
@@ -174,34 +240,134 @@ public class Element {
      * @param attribute The attribute to add.
      */
     public void add(final XmlAttribute attribute) {
-        attributes.add(attribute);
+        addAttribute(attribute.getName(), attribute.getValue());
+    }
+
+    /**
+     * Add an attribute with the given name and value.
+     *
+     * @param name The attribute name.
+     * @param value The attribute value.
+     */
+    public void addAttribute(final String name, final String value) {
+        if (attributeCount * 2 == attributes.length) {
+            attributes = Arrays.copyOf(attributes, Math.max(4, attributeCount * 4));
+        }
+        attributes[attributeCount * 2] = name;
+        attributes[attributeCount * 2 + 1] = value;
+        attributeCount++;
     }
 
     /**
      * Get all attributes.
      *
-     * @return All attributes.
+     * <p>Changing the returned attributes does not change the element.
+     *
+     * @return A read-only list of copies of all attributes.
      */
     public List<XmlAttribute> getAttributes() {
-        return attributes;
+        final List<XmlAttribute> list = new ArrayList<>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            list.add(new XmlAttribute(attributes[i * 2], attributes[i * 2 + 1]));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Get the number of attributes.
+     *
+     * @return The number of attributes.
+     */
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    /**
+     * Get the name of the given attribute.
+     *
+     * @param index The index of the attribute.
+     * @return The attribute name.
+     */
+    public String getAttributeName(final int index) {
+        return attributes[index * 2];
+    }
+
+    /**
+     * Get the value of the given attribute.
+     *
+     * @param index The index of the attribute.
+     * @return The attribute value.
+     */
+    public String getAttributeValue(final int index) {
+        return attributes[index * 2 + 1];
     }
 
     /**
-     * Set the body of the element.
+     * Set the body of the element as found in the XML data.
      *
-     * @param body The body to set.
+     * @param body The body to set, with the XML entities still being escaped.
      */
     public void setBody(final String body) {
-        this.body = body;
+        rawBody = body;
+        decodedBody = null;
+    }
+
+    /**
+     * Set the decoded body of the element.
+     *
+     * @param body The body to set, without any XML escaping.
+     */
+    public void setUnescapedBody(final String body) {
+        rawBody = null;
+        decodedBody = body;
+    }
+
+    /**
+     * Check whether the element has a body.
+     *
+     * @return Whether the element has a body.
+     */
+    public boolean hasBody() {
+        return rawBody != null || decodedBody != null;
     }
 
     /**
      * Get the element body with all XML being unescaped.
      *
+     * <p>Raw bodies are only unescaped on the first call.
+     *
      * @return The element body with all XML being unescaped.
      */
     public String getUnescapedBody() {
-        return body == null ? null : StringEscapeUtils.unescapeXml(body);
+        if (decodedBody == null && rawBody != null) {
+            decodedBody = XmlEscaper.unescape(rawBody);
+        }
+        return decodedBody;
+    }
+
+    /**
+     * Get the element body escaped for writing it to XML.
+     *
+     * <p>Raw bodies are returned unchanged as long as they are well-formed. Otherwise, the decoded
+     * body is escaped.
+     *
+     * @return The escaped element body.
+     */
+    public String getEscapedBody() {
+        if (rawBody != null && isWellFormed(rawBody)) {
+            return rawBody;
+        }
+        final String body = getUnescapedBody();
+        return XmlEscaper.escape(body);
+    }
+
+    /**
+     * Get the element body for converting it to other types.
+     *
+     * @return The raw body if available, the decoded body otherwise.
+     */
+    private String getPlainBody() {
+        return rawBody != null ? rawBody : decodedBody;
     }
 
     /**
@@ -210,7 +376,7 @@ public class Element {
      * @return The element body as a double value.
      */
     public Double getBodyDouble() {
-        return Double.valueOf(body);
+        return Double.valueOf(getPlainBody());
     }
 
     /**
@@ -219,7 +385,7 @@ public class Element {
      * @return The element body as an integer value.
      */
     public Integer getBodyInteger() {
-        return Integer.valueOf(body);
+        return Integer.valueOf(getPlainBody());
     }
 
     /**
@@ -228,6 +394,99 @@ public class Element {
      * @return The element body as a boolean value.
      */
     public Boolean getBodyBoolean() {
-        return Boolean.valueOf(body);
+        return Boolean.valueOf(getPlainBody());
+    }
+
+    /**
+     * Check whether the given raw text can be written to XML without escaping it again.
+     *
+     * <p>This requires each <code>&amp;</code> to start one of the predefined or a numeric entity
+     * reference, which are exactly the ones decoded by {@link #getUnescapedBody()}. Characters
+     * which are not allowed in XML text or would be replaced by the writer are not allowed either.
+     *
+     * @param text The text to check.
+     * @return Whether the text is well-formed.
+     */
+    private static boolean isWellFormed(final String text) {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char character = text.charAt(i);
+            if (character == '&') {
+                final int end = text.indexOf(';', i);
+                if (end == -1 || !isEntityReference(text, i + 1, end)) {
+                    return false;
+                }
+                i = end;
+            } else if (Character.isHighSurrogate(character)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                i++;
+            } else if (character == '<'
+                    || (character == '>' && text.startsWith("]]", i - 2))
+                    || (character < 0x20
+                            && character != '\t'
+                            && character != '\n'
+                            && character != '\r')
+                    || (character >= 0x7F && character <= 0x9F)
+                    || Character.isSurrogate(character)
+                    || character >= 0xFFFE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the given range is the name of a supported entity reference.
+     *
+     * @param text The text to check.
+     * @param start The index after the <code>&amp;</code>.
+     * @param end The index of the <code>;</code>.
+     * @return Whether the range is a predefined or a numeric entity reference.
+     */
+    private static boolean isEntityReference(final String text, final int start, final int end) {
+        final String name = text.substring(start, end);
+        switch (name) {
+            case "amp":
+            case "lt":
+            case "gt":
+            case "quot":
+            case "apos":
+                return true;
+            default:
+                break;
+        }
+
+        if (name.length() < 2 || name.charAt(0) != '#') {
+            return false;
+        }
+        final boolean hexadecimal = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+        final int digitsStart = hexadecimal ? 2 : 1;
+        if (digitsStart == name.length()) {
+            return false;
+        }
+        for (int i = digitsStart; i < name.length(); i++) {
+            if (Character.digit(name.charAt(i), hexadecimal ? 16 : 10) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Read-only view of the children of the element. */
+    private class ChildList extends AbstractList<Element> implements RandomAccess {
+
+        @Override
+        public Element get(final int index) {
+            if (index >= childCount) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return children[index];
+        }
+
+        @Override
+        public int size() {
+            return childCount;
+        }
     }
 }
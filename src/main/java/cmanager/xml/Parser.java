@@ -1,14 +1,11 @@
 package cmanager.xml;
 
 import cmanager.exception.MalFormedException;
-import cmanager.util.ThreadStore;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
-import org.apache.commons.text.StringEscapeUtils;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /** Parser for XML files. */
 public class Parser {
@@ -22,7 +19,7 @@ public class Parser {
      * @throws IOException Something went wrong when reading/writing data.
      */
     public static Element parse(final String element) throws MalFormedException, IOException {
-        return parse(new BufferReadAbstraction(element), null);
+        return parse(new CharWindowReadAbstraction(element), null);
     }
 
     /**
@@ -36,7 +33,7 @@ public class Parser {
      */
     public static Element parse(InputStream inputStream, XmlParserCallbackInterface callback)
             throws MalFormedException, IOException {
-        return parse(new BufferReadAbstraction(inputStream), callback);
+        return parse(new CharWindowReadAbstraction(inputStream), callback);
     }
 
     /**
@@ -52,6 +49,7 @@ public class Parser {
             final BufferReadAbstraction element, XmlParserCallbackInterface callback)
             throws MalFormedException, IOException {
         final Element root = new Element();
+        final SymbolTable symbols = new SymbolTable();
 
         do {
             removeDelimiter(element);
@@ -70,8 +68,8 @@ public class Parser {
                 element.deleteUntil(index + 1);
             }
 
-            // Parse the children.
-            parse(element, root, callback);
+            // Parse the next top-level element.
+            parse(element, root, callback, symbols);
 
             removeDelimiter(element);
         } while (element.available());
@@ -80,38 +78,117 @@ public class Parser {
     }
 
     /**
-     * Parse the given XML data using the given callback and the specified root element.
+     * Parse the next element including all of its children and add it to the given root element.
+     *
+     * <p>The nesting is tracked using an explicit stack instead of recursion, so neither deeply
+     * nested elements nor long lists of siblings are limited by the stack size of the thread.
      *
      * @param element The buffer to get the data from.
      * @param root The root element to add the parsed data to.
      * @param callback The callback to use.
+     * @param symbols The table for the shared instances of the names.
      * @throws MalFormedException The given element is malformed.
      * @throws IOException Something went wrong when reading/writing data.
      */
     private static void parse(
             final BufferReadAbstraction element,
             final Element root,
-            XmlParserCallbackInterface callback)
+            XmlParserCallbackInterface callback,
+            final SymbolTable symbols)
             throws MalFormedException, IOException {
         removeDelimiter(element);
 
-        // Each tag has to start with a `<`.
-        if (element.charAt(0) != '<') {
+        // Each tag has to start with a `<`, but there is nothing to close at this level.
+        if (element.charAt(0) != '<' || element.charAt(1) == '/') {
             throw new MalFormedException();
         }
 
-        // This is a closing tag, starting with `</`.
-        if (element.charAt(1) == '/') {
+        final Element topElement = new Element();
+        if (parseStartTag(element, topElement, symbols)) {
+            finishElement(topElement, root, callback);
             return;
         }
 
-        final Element outputElement = new Element();
+        // The elements which have been opened, but not yet closed, with the innermost first.
+        final Deque<Element> openElements = new ArrayDeque<>();
+        openElements.push(topElement);
+
+        // Parse the bodies and the children.
+        while (!openElements.isEmpty()) {
+            final Element outputElement = openElements.peek();
+
+            final int startOfName = element.indexOf("<");
+            if (startOfName == -1) {
+                final StringBuilder elementTemp = element.toStringBuilder();
+                trim(elementTemp);
+                if (elementTemp.length() != 0) {
+                    throw new MalFormedException();
+                }
+
+                // The data ends without closing the remaining elements.
+                while (!openElements.isEmpty()) {
+                    final Element openElement = openElements.pop();
+                    finishElement(
+                            openElement,
+                            openElements.isEmpty() ? root : openElements.peek(),
+                            callback);
+                }
+                break;
+            }
+
+            final StringBuilder body = new StringBuilder(element.substring(0, startOfName));
+            trim(body);
+            outputElement.setBody(body.toString());
+
+            element.deleteUntil(startOfName);
 
+            // Check if the current element is closed or a child is following.
+            if (element.charAt(1) == '/') {
+                element.deleteChar();
+                element.deleteChar();
+
+                final int length = element.regionMatches(0, outputElement.getName());
+                if (length == -1 || element.charAt(length) != '>') {
+                    throw new MalFormedException();
+                }
+                element.deleteUntil(length + 1);
+
+                openElements.pop();
+                finishElement(
+                        outputElement,
+                        openElements.isEmpty() ? root : openElements.peek(),
+                        callback);
+            } else {
+                final Element child = new Element();
+                if (parseStartTag(element, child, symbols)) {
+                    finishElement(child, outputElement, callback);
+                } else {
+                    openElements.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the start tag at the beginning of the buffer including its attributes.
+     *
+     * @param element The buffer to get the data from.
+     * @param outputElement The element to set the name and the attributes for.
+     * @param symbols The table for the shared instances of the names.
+     * @return Whether this is an empty-element tag like <code>&lt;name /&gt;</code>, which does
+     *     not have any body or children.
+     * @throws MalFormedException The start tag is malformed.
+     * @throws IOException Something went wrong when reading/writing data.
+     */
+    private static boolean parseStartTag(
+            final BufferReadAbstraction element,
+            final Element outputElement,
+            final SymbolTable symbols)
+            throws MalFormedException, IOException {
         // Retrieve the element name/tag.
         final int nameEnd = endOfName(element);
-        final String elementName = element.substring(1, nameEnd);
+        outputElement.setName(element.symbol(1, nameEnd, symbols));
         element.deleteUntil(nameEnd);
-        outputElement.setName(elementName);
 
         // Parse attributes.
         removeDelimiter(element);
@@ -122,23 +199,12 @@ public class Parser {
             if ((element.charAt(0) == '/' && element.charAt(1) == '>')) {
                 element.deleteChar();
                 element.deleteChar();
-
-                // Parse the next elements.
-                parse(element, root, callback);
-
-                if (callback != null && !callback.elementLocatedCorrectly(outputElement, root)) {
-                    throw new MalFormedException();
-                }
-
-                if (callback == null || !callback.elementFinished(outputElement)) {
-                    root.getChildren().add(outputElement);
-                }
-                return;
+                return true;
             }
 
             // Tag is not closed => an attribute is following.
             int index = element.indexOf("=");
-            final String attributeName = element.substring(0, index);
+            final String attributeName = element.symbol(0, index, symbols);
             element.deleteUntil(index + 1);
 
             String attributeValue;
@@ -153,56 +219,32 @@ public class Parser {
             }
 
             // Add the attribute.
-            final XmlAttribute attribute = new XmlAttribute(attributeName);
-            attribute.setValue(StringEscapeUtils.unescapeXml(attributeValue));
-            outputElement.getAttributes().add(attribute);
+            outputElement.addAttribute(attributeName, XmlEscaper.unescape(attributeValue));
         }
         element.deleteChar();
+        return false;
+    }
 
-        // Parse the body.
-        while (true) {
-            final int startOfName = element.indexOf("<");
-            if (startOfName == -1) {
-                final StringBuilder elementTemp = element.toStringBuilder();
-                trim(elementTemp);
-                if (elementTemp.length() == 0) {
-                    break;
-                } else {
-                    throw new MalFormedException();
-                }
-            }
-
-            final StringBuilder body = new StringBuilder(element.substring(0, startOfName));
-            trim(body);
-            outputElement.setBody(body.toString());
-
-            element.deleteUntil(startOfName);
-
-            // Check if we have children or not.
-            if (element.charAt(1) == '/') {
-                // We do not have children, so we can exit the loop afterwards.
-                element.deleteChar();
-                element.deleteChar();
-
-                if (!element.substring(0, elementName.length() + 1).equals(elementName + ">")) {
-                    throw new MalFormedException();
-                }
-                element.deleteUntil(elementName.length() + 1);
-
-                break;
-            } else {
-                // There are some children, as the current tag is not closed.
-                parse(element, outputElement, callback);
-            }
-        }
-
-        if (callback != null && !callback.elementLocatedCorrectly(outputElement, root)) {
+    /**
+     * Pass the completely parsed element to the callback and add it to its parent if requested.
+     *
+     * @param outputElement The parsed element.
+     * @param parent The parent element.
+     * @param callback The callback to use.
+     * @throws MalFormedException The callback rejects the location of the element.
+     */
+    private static void finishElement(
+            final Element outputElement,
+            final Element parent,
+            final XmlParserCallbackInterface callback)
+            throws MalFormedException {
+        if (callback != null && !callback.elementLocatedCorrectly(outputElement, parent)) {
             throw new MalFormedException();
         }
 
-        // Add the new element as a child of the root.
+        // Add the new element as a child of the parent.
         if (callback == null || !callback.elementFinished(outputElement)) {
-            root.getChildren().add(outputElement);
+            parent.add(outputElement);
         }
     }
 
@@ -212,12 +254,13 @@ public class Parser {
      * @param stringBuilder The string builder to work on.
      */
     static void trim(final StringBuilder stringBuilder) {
-        removeDelimiter(stringBuilder);
-
-        while (stringBuilder.length() > 0
-                && isDelimiter(stringBuilder.charAt(stringBuilder.length() - 1))) {
-            stringBuilder.deleteCharAt(stringBuilder.length() - 1);
+        int end = stringBuilder.length();
+        while (end > 0 && isDelimiter(stringBuilder.charAt(end - 1))) {
+            end--;
         }
+        stringBuilder.setLength(end);
+
+        removeDelimiter(stringBuilder);
     }
 
     /**
@@ -230,9 +273,11 @@ public class Parser {
     static int endOfName(final BufferReadAbstraction bufferReadAbstraction) throws IOException {
         int i = 0;
 
-        // The end has not been reached when there is no delimiter, closing `>` or `?>`.
+        // The end has not been reached when there is no delimiter, closing `>`, `/>` or `?>`.
         while (!isDelimiter(bufferReadAbstraction.charAt(i))
                 && bufferReadAbstraction.charAt(i) != '>'
+                && !(bufferReadAbstraction.charAt(i) == '/'
+                        && bufferReadAbstraction.charAt(i + 1) == '>')
                 && !(bufferReadAbstraction.charAt(i) == '?'
                         && bufferReadAbstraction.charAt(i + 1) == '>')) {
             i++;
@@ -271,9 +316,11 @@ public class Parser {
      * @param stringBuilder The string builder to work on.
      */
     static void removeDelimiter(final StringBuilder stringBuilder) {
-        while (stringBuilder.length() > 0 && isDelimiter(stringBuilder.charAt(0))) {
-            stringBuilder.deleteCharAt(0);
+        int start = 0;
+        while (start < stringBuilder.length() && isDelimiter(stringBuilder.charAt(start))) {
+            start++;
         }
+        stringBuilder.delete(0, start);
     }
 
     /**
@@ -286,79 +333,65 @@ public class Parser {
      * @throws Throwable Something went wrong with the conversion.
      */
     public static void xmlToBuffer(final Element root, OutputStream outputStream) throws Throwable {
+        xmlToBuffer(root, outputStream, true);
+    }
+
+    /**
+     * Write the given XML to the buffer without indenting the lines.
+     *
+     * <p>This is the top-level method adding the `&lt;?xml ... ?&gt;` line.
+     *
+     * @param root The root of the XML tree.
+     * @param outputStream The stream to write to.
+     * @throws Throwable Something went wrong with the conversion.
+     */
+    public static void xmlToCompactBuffer(final Element root, OutputStream outputStream)
+            throws Throwable {
+        xmlToBuffer(root, outputStream, false);
+    }
+
+    /**
+     * Write the given XML to the buffer.
+     *
+     * @param root The root of the XML tree.
+     * @param outputStream The stream to write to.
+     * @param indent Whether to indent the lines according to the level of the elements.
+     * @throws Throwable Something went wrong with the conversion.
+     */
+    private static void xmlToBuffer(
+            final Element root,
+            final OutputStream outputStream,
+            final boolean indent)
+            throws Throwable {
         shrinkXmlTree(root);
 
-        BufferedWriter bufferedWriter =
-                new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
-        BufferWriteAbstraction bufferWriteAbstraction =
-                new BufferedWriterWriteAbstraction(bufferedWriter);
+        final BufferWriteAbstraction bufferWriteAbstraction =
+                new Utf8ByteWriteAbstraction(outputStream, indent);
 
         bufferWriteAbstraction.append("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n");
         for (final Element child : root.getChildren()) {
             xmlToBuffer(child, bufferWriteAbstraction, 0);
         }
 
-        bufferedWriter.flush();
+        bufferWriteAbstraction.flush();
     }
 
     /**
      * Shrink the given XML tree by removing elements without a body, attributes and children.
      *
      * @param element The tree root to work on.
-     * @throws Throwable Something went wrong with shrinking the tree.
      */
-    private static void shrinkXmlTree(final Element element) throws Throwable {
-        if (element.getChildren().size() < 100) {
-            // If the tree is small enough, use one thread only.
-            for (final Element child : element.getChildren()) {
-                shrinkXmlTree(child);
-            }
-        } else {
-            // If the tree is too large, use multiple threads.
-            final int listSize = element.getChildren().size();
-            final ThreadStore threadStore = new ThreadStore();
-            final int cores = threadStore.getCores(listSize);
-            final int perProcess = listSize / cores;
-
-            for (int core = 0; core < cores; core++) {
-                final int start = perProcess * core;
-
-                int temp = Math.min(perProcess * (core + 1), listSize);
-                if (core == cores - 1) {
-                    temp = listSize;
-                }
-                final int end = temp;
-
-                threadStore.addAndRun(new Thread(() -> shrinkXmlElement(element, start, end)));
-            }
-            threadStore.joinAndThrow();
+    private static void shrinkXmlTree(final Element element) {
+        for (final Element child : element.getChildren()) {
+            shrinkXmlTree(child);
         }
 
         // Remove unused children.
-        element.getChildren()
-                .removeIf(
-                        child ->
-                                child.getUnescapedBody() == null
-                                        && child.getAttributes().size() == 0
-                                        && child.getChildren().size() == 0);
-    }
-
-    /**
-     * Shrink the given XML tree element by removing elements without a body, attributes and
-     * children.
-     *
-     * @param element The tree element to work on.
-     * @throws Throwable Something went wrong with shrinking the element.
-     */
-    private static void shrinkXmlElement(final Element element, final int start, final int end) {
-        try {
-            for (int i = start; i < end; i++) {
-                shrinkXmlTree(element.getChildren().get(i));
-            }
-        } catch (Throwable throwable) {
-            final Thread thread = Thread.currentThread();
-            thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
-        }
+        element.removeChildren(
+                child ->
+                        !child.hasBody()
+                                && child.getAttributeCount() == 0
+                                && child.getChildCount() == 0);
     }
 
     /**
@@ -379,131 +412,39 @@ public class Parser {
         final String name = element.getName();
 
         // Add the tag name including the attributes.
-        appendSpaces(bufferWriteAbstraction, level);
-        bufferWriteAbstraction.append("<").append(name);
-        for (final XmlAttribute attribute : element.getAttributes()) {
-            if (attribute.getValue() != null) {
-                bufferWriteAbstraction.append(" ").append(attribute.getName()).append("=\"");
+        bufferWriteAbstraction.appendIndentation(level).appendStartTag(name);
+        for (int i = 0; i < element.getAttributeCount(); i++) {
+            final String value = element.getAttributeValue(i);
+            if (value != null) {
                 bufferWriteAbstraction
-                        .append(StringEscapeUtils.escapeXml11(attribute.getValue()))
-                        .append("\"");
+                        .append(" ")
+                        .append(element.getAttributeName(i))
+                        .append("=\"");
+                bufferWriteAbstraction.appendEscaped(value).append("\"");
             }
         }
 
         // Close the tag and add the body.
-        if (element.getUnescapedBody() == null && element.getChildren().size() == 0) {
+        if (!element.hasBody() && element.getChildCount() == 0) {
             // This element has no children and body, so close the element directly.
             bufferWriteAbstraction.append(" />\n");
         } else {
             // This element has children and/or a body, so handle them.
 
             bufferWriteAbstraction.append(">");
-            if (element.getChildren().size() != 0) {
+            if (element.getChildCount() != 0) {
                 bufferWriteAbstraction.append("\n");
             }
-            if (element.getChildren().size() > 200) {
-                // Use multiple threads, if there are many children e.g. the children of "gpx".
-                final int listSize = element.getChildren().size();
-                final ThreadStore threadStore = new ThreadStore();
-                final int cores = threadStore.getCores(listSize);
-                final int perProcess = listSize / cores;
-
-                for (int core = 0; core < cores; core++) {
-                    final int start = perProcess * core;
-
-                    int temp = Math.min(perProcess * (core + 1), listSize);
-                    if (core == cores - 1) {
-                        temp = listSize;
-                    }
-                    final int end = temp;
-
-                    threadStore.addAndRun(
-                            new Thread(
-                                    new Runnable() {
-                                        public void run() {
-                                            xmlElementToBuffer(
-                                                    element,
-                                                    start,
-                                                    end,
-                                                    level,
-                                                    bufferWriteAbstraction);
-                                        }
-                                    }));
-                }
-                threadStore.joinAndThrow();
-            } else {
-                for (final Element child : element.getChildren()) {
-                    xmlToBuffer(child, bufferWriteAbstraction, level + 1);
-                }
+            for (final Element child : element.getChildren()) {
+                xmlToBuffer(child, bufferWriteAbstraction, level + 1);
             }
-            if (element.getUnescapedBody() != null) {
-                bufferWriteAbstraction.append(
-                        StringEscapeUtils.escapeXml11(element.getUnescapedBody()));
+            if (element.hasBody()) {
+                // Bodies read from XML are usually written without decoding them.
+                bufferWriteAbstraction.append(element.getEscapedBody());
             } else {
-                appendSpaces(bufferWriteAbstraction, level);
-            }
-            bufferWriteAbstraction.append("</").append(name).append(">\n");
-        }
-    }
-
-    /**
-     * Write the given XML element to The buffer.
-     *
-     * <p>This will write the given child elements to the buffer.
-     *
-     * @param element The tree element to write.
-     * @param start The first child element to write from the current element.
-     * @param end The last child element to write from the current element.
-     * @param level The current level inside the tree.
-     * @param bufferWriteAbstraction The buffer to write to.
-     * @throws Throwable Something went wrong with the conversion.
-     */
-    private static void xmlElementToBuffer(
-            final Element element,
-            final int start,
-            final int end,
-            final int level,
-            final BufferWriteAbstraction bufferWriteAbstraction) {
-        try {
-            StringBufferWriteAbstraction bufferWriteAbstractionThread =
-                    new StringBufferWriteAbstraction(new StringBuilder());
-            for (int i = start; i < end; i++) {
-                final Element child = element.getChildren().get(i);
-                xmlToBuffer(child, bufferWriteAbstractionThread, level + 1);
-
-                // Flush each 100 elements.
-                if (i % 100 == 0) {
-                    synchronized (bufferWriteAbstraction) {
-                        bufferWriteAbstraction.append(bufferWriteAbstraction);
-                    }
-                    bufferWriteAbstractionThread =
-                            new StringBufferWriteAbstraction(new StringBuilder());
-                }
-            }
-
-            synchronized (bufferWriteAbstraction) {
-                bufferWriteAbstraction.append(bufferWriteAbstraction);
+                bufferWriteAbstraction.appendIndentation(level);
             }
-        } catch (Throwable throwable) {
-            final Thread thread = Thread.currentThread();
-            thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
-        }
-    }
-
-    /**
-     * Append <code>factor * 2</code> spaces to the buffer.
-     *
-     * <p>This is mainly used in conjunction with the XML tree writer to indent the levels.
-     *
-     * @param bufferWriteAbstraction The buffer to write to.
-     * @param factor The half of the number of spaces to write.
-     * @throws IOException Something went wrong with writing the spaces.
-     */
-    private static void appendSpaces(
-            final BufferWriteAbstraction bufferWriteAbstraction, final int factor)
-            throws IOException {
-        for (int i = 0; i < factor * 2; i++) {
-            bufferWriteAbstraction.append(" ");
+            bufferWriteAbstraction.appendEndTag(name);
         }
     }
 }
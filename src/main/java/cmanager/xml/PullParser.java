@@ -0,0 +1,622 @@
+package cmanager.xml;
+
+import cmanager.exception.MalFormedException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Pull parser for XML files.
+ *
+ * <p>In contrast to {@link Parser}, this does not build an element tree, but reports the document
+ * structure as a sequence of events which are requested by the caller using {@link #next()}. This
+ * allows binding the data directly without allocating intermediate elements.
+ *
+ * <p>Processing instructions, document type declarations and comments are skipped. Text is
+ * reported with the leading and trailing delimiters being removed and only if it is not empty
+ * afterwards.
+ */
+public class PullParser {
+
+    /** The buffer to get the data from. */
+    private final BufferReadAbstraction buffer;
+
+    /** The shared instances of the element and attribute names. */
+    private final SymbolTable symbols = new SymbolTable();
+
+    /** The current event. */
+    private XmlEvent event = null;
+
+    /** The names of the currently opened elements, with the innermost element being the last. */
+    private String[] openElements = new String[16];
+
+    /** The number of currently opened elements. */
+    private int depth = 0;
+
+    /** The name of the current element. */
+    private String name = null;
+
+    /** Whether the current start tag is an empty-element tag like <code>&lt;name /&gt;</code>. */
+    private boolean emptyElement = false;
+
+    /** The names of the attributes of the current start tag. */
+    private String[] attributeNames = new String[8];
+
+    /** The raw (escaped) values of the attributes of the current start tag. */
+    private CharSequence[] attributeValues = new CharSequence[8];
+
+    /** The number of attributes of the current start tag. */
+    private int attributeCount = 0;
+
+    /** The raw (escaped) text of the current text event. */
+    private CharSequence text = null;
+
+    /**
+     * Create a new pull parser for the given stream.
+     *
+     * @param inputStream The stream to get the data from.
+     */
+    public PullParser(InputStream inputStream) {
+        this(new CharWindowReadAbstraction(inputStream));
+    }
+
+    /**
+     * Create a new pull parser for the given UTF-8 encoded data, for example a memory-mapped file.
+     *
+     * <p>The data is tokenized on the raw bytes. Text and attribute values are only decoded when
+     * they are requested.
+     *
+     * @param byteBuffer The data to parse, starting at the current position of the buffer.
+     */
+    public PullParser(final ByteBuffer byteBuffer) {
+        this(new Utf8BufferReadAbstraction(byteBuffer));
+    }
+
+    /**
+     * Create a new pull parser for the given string.
+     *
+     * @param string The string to parse.
+     */
+    public PullParser(final String string) {
+        this(new CharWindowReadAbstraction(string));
+    }
+
+    /**
+     * Create a new pull parser for the given buffer.
+     *
+     * @param buffer The buffer to get the data from.
+     */
+    PullParser(final BufferReadAbstraction buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Advance to the next event.
+     *
+     * @return The next event.
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    public XmlEvent next() throws MalFormedException, IOException {
+        attributeCount = 0;
+        text = null;
+
+        // An empty-element tag is reported as a start and an end event.
+        if (event == XmlEvent.START_ELEMENT && emptyElement) {
+            emptyElement = false;
+            closeElement();
+            return event;
+        }
+
+        while (true) {
+            if (depth == 0) {
+                // Outside of the elements, there may only be delimiters.
+                Parser.removeDelimiter(buffer);
+                if (!buffer.available()) {
+                    event = XmlEvent.END_DOCUMENT;
+                    return event;
+                }
+                if (buffer.charAt(0) != '<') {
+                    throw new MalFormedException();
+                }
+            } else if (readText()) {
+                event = XmlEvent.TEXT;
+                return event;
+            }
+
+            final char marker = buffer.charAt(1);
+            if (marker == '?') {
+                // <?xml version="1.0" encoding="utf-8"?>
+                skipPast("?>");
+            } else if (marker == '!') {
+                // <!DOCTYPE ... > or <!-- ... -->
+                skipPast(buffer.substring(0, 4).equals("<!--") ? "-->" : ">");
+            } else if (marker == '/') {
+                readEndTag();
+                return event;
+            } else {
+                readStartTag();
+                return event;
+            }
+        }
+    }
+
+    /**
+     * Read the text until the next tag.
+     *
+     * <p>The buffer will start with the next tag afterwards.
+     *
+     * @return Whether there has been any text apart from delimiters.
+     * @throws MalFormedException The data ends before all elements have been closed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private boolean readText() throws MalFormedException, IOException {
+        final int end = buffer.indexOf("<");
+        if (end == -1) {
+            throw new MalFormedException();
+        }
+
+        // Determine the text boundaries without the delimiters.
+        int textStart = 0;
+        while (textStart < end && Parser.isDelimiter(buffer.charAt(textStart))) {
+            textStart++;
+        }
+        int textEnd = end;
+        while (textEnd > textStart && Parser.isDelimiter(buffer.charAt(textEnd - 1))) {
+            textEnd--;
+        }
+
+        if (textStart < textEnd) {
+            text = buffer.token(textStart, textEnd);
+        }
+        buffer.deleteUntil(end);
+
+        return text != null;
+    }
+
+    /**
+     * Skip all data up to and including the given string.
+     *
+     * @param end The string to search for.
+     * @throws MalFormedException The given string could not be found.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private void skipPast(final String end) throws MalFormedException, IOException {
+        buffer.deleteUntil(lengthUntil(end));
+    }
+
+    /**
+     * Read the start tag including its attributes.
+     *
+     * @throws MalFormedException The start tag is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private void readStartTag() throws MalFormedException, IOException {
+        // Retrieve the element name/tag.
+        final int nameEnd = Parser.endOfName(buffer);
+        if (nameEnd <= 1) {
+            throw new MalFormedException();
+        }
+        name = buffer.symbol(1, nameEnd, symbols);
+        buffer.deleteUntil(nameEnd);
+
+        // Parse the attributes until the tag is closed.
+        while (true) {
+            Parser.removeDelimiter(buffer);
+
+            final char character = buffer.charAt(0);
+            if (character == '>') {
+                buffer.deleteChar();
+                emptyElement = false;
+                break;
+            }
+            if (character == '/') {
+                if (buffer.charAt(1) != '>') {
+                    throw new MalFormedException();
+                }
+                buffer.deleteUntil(2);
+                emptyElement = true;
+                break;
+            }
+
+            readAttribute();
+        }
+
+        // Remember the element to check the end tag against.
+        if (depth == openElements.length) {
+            openElements = Arrays.copyOf(openElements, depth * 2);
+        }
+        openElements[depth++] = name;
+
+        event = XmlEvent.START_ELEMENT;
+    }
+
+    /**
+     * Read a single attribute of the current start tag.
+     *
+     * @throws MalFormedException The attribute is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private void readAttribute() throws MalFormedException, IOException {
+        // Retrieve the attribute name.
+        int nameEnd = 0;
+        char character;
+        while ((character = buffer.charAt(nameEnd)) != '=' && !Parser.isDelimiter(character)) {
+            if (character == '>' || character == '/' || character == '<') {
+                throw new MalFormedException();
+            }
+            nameEnd++;
+        }
+        final String attributeName = buffer.symbol(0, nameEnd, symbols);
+        buffer.deleteUntil(nameEnd);
+
+        // Skip the assignment.
+        Parser.removeDelimiter(buffer);
+        if (buffer.charAt(0) != '=') {
+            throw new MalFormedException();
+        }
+        buffer.deleteChar();
+        Parser.removeDelimiter(buffer);
+
+        // Retrieve the quoted value.
+        final char marking = buffer.charAt(0);
+        if (marking != '"' && marking != '\'') {
+            throw new MalFormedException();
+        }
+        buffer.deleteChar();
+        final int valueEnd = buffer.indexOf(String.valueOf(marking));
+        if (valueEnd == -1) {
+            throw new MalFormedException();
+        }
+        final CharSequence attributeValue = buffer.token(0, valueEnd);
+        buffer.deleteUntil(valueEnd + 1);
+
+        // Add the attribute.
+        if (attributeCount == attributeNames.length) {
+            attributeNames = Arrays.copyOf(attributeNames, attributeCount * 2);
+            attributeValues = Arrays.copyOf(attributeValues, attributeCount * 2);
+        }
+        attributeNames[attributeCount] = attributeName;
+        attributeValues[attributeCount] = attributeValue;
+        attributeCount++;
+    }
+
+    /**
+     * Read the end tag and check that it matches the innermost opened element.
+     *
+     * @throws MalFormedException The end tag does not match or is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private void readEndTag() throws MalFormedException, IOException {
+        if (depth == 0) {
+            throw new MalFormedException();
+        }
+
+        // Compare the name without creating a string for it.
+        final int length = buffer.regionMatches(2, openElements[depth - 1]);
+        if (length == -1) {
+            throw new MalFormedException();
+        }
+
+        // Allow delimiters before the closing `>`.
+        int end = length + 2;
+        while (Parser.isDelimiter(buffer.charAt(end))) {
+            end++;
+        }
+        if (buffer.charAt(end) != '>') {
+            throw new MalFormedException();
+        }
+        buffer.deleteUntil(end + 1);
+
+        closeElement();
+    }
+
+    /** Close the innermost opened element. */
+    private void closeElement() {
+        depth--;
+        name = openElements[depth];
+        openElements[depth] = null;
+
+        event = XmlEvent.END_ELEMENT;
+    }
+
+    /**
+     * Read the text of the current element and advance to its end.
+     *
+     * <p>This has to be called on a start event. Nested elements are skipped. The parser will be
+     * positioned on the end event of the element afterwards.
+     *
+     * @return The unescaped text directly before the end tag, an empty string if there is no such
+     *     text or <code>null</code> if the element is an empty-element tag.
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    public String nextText() throws MalFormedException, IOException {
+        if (event != XmlEvent.START_ELEMENT) {
+            throw new IllegalStateException();
+        }
+        if (emptyElement) {
+            next();
+            return null;
+        }
+
+        final int elementDepth = depth;
+        String result = "";
+        while (true) {
+            switch (next()) {
+                case TEXT:
+                    result = getText();
+                    break;
+                case START_ELEMENT:
+                    result = "";
+                    break;
+                case END_ELEMENT:
+                    if (depth < elementDepth) {
+                        return result;
+                    }
+                    result = "";
+                    break;
+                default:
+                    throw new MalFormedException();
+            }
+        }
+    }
+
+    /**
+     * Skip the current element including all of its children.
+     *
+     * <p>This has to be called on a start event. The parser will be positioned on the end event of
+     * the element afterwards.
+     *
+     * <p>The content is only scanned for the tag boundaries, without creating any names, text or
+     * attribute values. Thus only the end tag of the element itself is checked for matching the
+     * start tag, but not the end tags of nested elements.
+     *
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    public void skipElement() throws MalFormedException, IOException {
+        scanElement(null);
+    }
+
+    /**
+     * Copy the current element including all of its children to the given builder.
+     *
+     * <p>This has to be called on a start event. The parser will be positioned on the end event of
+     * the element afterwards.
+     *
+     * <p>The start tag is rebuilt from the raw attribute values, while the content is copied as
+     * it is. Parsing the copy yields the same events as parsing the element in place. Like with
+     * {@link #skipElement()}, the content is only scanned for the tag boundaries.
+     *
+     * @param target The builder to append the element to.
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    public void copyElement(final StringBuilder target) throws MalFormedException, IOException {
+        if (event != XmlEvent.START_ELEMENT) {
+            throw new IllegalStateException();
+        }
+
+        target.append('<').append(name);
+        for (int i = 0; i < attributeCount; i++) {
+            // The raw value cannot contain the quotation mark it has been enclosed in.
+            final String value = attributeValues[i].toString();
+            final char marking = value.indexOf('"') == -1 ? '"' : '\'';
+            target.append(' ').append(attributeNames[i]).append('=');
+            target.append(marking).append(value).append(marking);
+        }
+        target.append(emptyElement ? "/>" : ">");
+
+        scanElement(target);
+    }
+
+    /**
+     * Advance to the end of the current element, only scanning the content for tag boundaries.
+     *
+     * @param target The builder to copy the content and the end tag to or <code>null</code> if
+     *     the content should be skipped.
+     * @throws MalFormedException The data is malformed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private void scanElement(final StringBuilder target) throws MalFormedException, IOException {
+        if (event != XmlEvent.START_ELEMENT) {
+            throw new IllegalStateException();
+        }
+        if (emptyElement) {
+            next();
+            return;
+        }
+
+        attributeCount = 0;
+        text = null;
+        int nestedDepth = 0;
+        while (true) {
+            final int start = buffer.indexOf("<");
+            if (start == -1) {
+                throw new MalFormedException();
+            }
+            consume(start, target);
+
+            final char marker = buffer.charAt(1);
+            final int length;
+            if (marker == '?') {
+                length = lengthUntil("?>");
+            } else if (marker == '!') {
+                length = lengthUntil(buffer.regionMatches(0, "<!--") != -1 ? "-->" : ">");
+            } else if (marker != '/') {
+                length = lengthOfStartTag();
+                if (buffer.charAt(length - 2) != '/') {
+                    nestedDepth++;
+                }
+            } else if (nestedDepth > 0) {
+                length = lengthUntil(">");
+                nestedDepth--;
+            } else {
+                if (target != null) {
+                    target.append("</").append(openElements[depth - 1]).append('>');
+                }
+                readEndTag();
+                return;
+            }
+            consume(length, target);
+        }
+    }
+
+    /**
+     * Determine the length of the data up to and including the given string.
+     *
+     * @param end The string to search for.
+     * @return The number of characters until the end of the string.
+     * @throws MalFormedException The given string could not be found.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private int lengthUntil(final String end) throws MalFormedException, IOException {
+        final int index = buffer.indexOf(end);
+        if (index == -1) {
+            throw new MalFormedException();
+        }
+        return index + end.length();
+    }
+
+    /**
+     * Determine the length of the start tag at the beginning of the buffer without reading its
+     * attributes.
+     *
+     * @return The number of characters until the end of the start tag.
+     * @throws MalFormedException The start tag is not closed.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private int lengthOfStartTag() throws MalFormedException, IOException {
+        int index = 1;
+        char character;
+        while ((character = buffer.charAt(index)) != '>') {
+            if (character == '"' || character == '\'') {
+                // Attribute values may contain the closing character.
+                while (buffer.charAt(++index) != character) {
+                    // Ignore the attribute value.
+                }
+            } else if (character == '<') {
+                throw new MalFormedException();
+            }
+            index++;
+        }
+        return index + 1;
+    }
+
+    /**
+     * Consume the given number of characters, copying them if requested.
+     *
+     * @param end The number of characters to consume.
+     * @param target The builder to copy the characters to or <code>null</code>.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private void consume(final int end, final StringBuilder target) throws IOException {
+        if (target != null) {
+            buffer.copyTo(target, end);
+        }
+        buffer.deleteUntil(end);
+    }
+
+    /**
+     * Get the current event.
+     *
+     * @return The current event or <code>null</code> if {@link #next()} has not been called yet.
+     */
+    public XmlEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Get the number of currently opened elements.
+     *
+     * <p>For a start event, this includes the started element, while it excludes the closed
+     * element for an end event.
+     *
+     * @return The number of currently opened elements.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the name of the current element.
+     *
+     * @return The name of the element for start and end events.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check whether the current element is an empty-element tag like <code>&lt;name /&gt;</code>.
+     *
+     * @return Whether the current start tag is an empty-element tag.
+     */
+    public boolean isEmptyElement() {
+        return event == XmlEvent.START_ELEMENT && emptyElement;
+    }
+
+    /**
+     * Get the number of attributes of the current start tag.
+     *
+     * @return The number of attributes.
+     */
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    /**
+     * Get the name of the given attribute of the current start tag.
+     *
+     * @param index The index of the attribute.
+     * @return The attribute name.
+     */
+    public String getAttributeName(final int index) {
+        return attributeNames[index];
+    }
+
+    /**
+     * Get the unescaped value of the given attribute of the current start tag.
+     *
+     * @param index The index of the attribute.
+     * @return The unescaped attribute value.
+     */
+    public String getAttributeValue(final int index) {
+        return XmlEscaper.unescape(attributeValues[index].toString());
+    }
+
+    /**
+     * Get the unescaped value of the attribute with the given name of the current start tag.
+     *
+     * @param attributeName The name of the attribute.
+     * @return The unescaped attribute value or <code>null</code> if there is no such attribute.
+     */
+    public String getAttributeValue(final String attributeName) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributeNames[i].equals(attributeName)) {
+                return getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the unescaped text of the current text event.
+     *
+     * @return The unescaped text.
+     */
+    public String getText() {
+        return text == null ? null : XmlEscaper.unescape(text.toString());
+    }
+
+    /**
+     * Get the raw (escaped) text of the current text event.
+     *
+     * @return The escaped text as found inside the data.
+     */
+    public String getRawText() {
+        return text == null ? null : text.toString();
+    }
+}
@@ -0,0 +1,277 @@
+package cmanager.xml;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Table of the element and attribute names found by a single parser.
+ *
+ * <p>Each distinct name is only created once and shared by all elements using it, so comparing
+ * names usually ends with the identity check of {@link String#equals(Object)}. The names are
+ * looked up directly inside the read buffer, without creating a string for names which are known
+ * already.
+ *
+ * <p>The names of GPX files are registered beforehand. As these are string literals, they are the
+ * same instances as the literals used when dispatching on the names.
+ */
+final class SymbolTable {
+
+    /** The element and attribute names of GPX files including the common extensions. */
+    private static final String[] GPX_NAMES = {
+        // GPX.
+        "gpx",
+        "version",
+        "creator",
+        "xmlns",
+        "xmlns:xsi",
+        "xsi:schemaLocation",
+        "name",
+        "desc",
+        "author",
+        "email",
+        "url",
+        "urlname",
+        "time",
+        "keywords",
+        "bounds",
+        "minlat",
+        "minlon",
+        "maxlat",
+        "maxlon",
+        "wpt",
+        "lat",
+        "lon",
+        "ele",
+        "cmt",
+        "src",
+        "sym",
+        "type",
+        // Groundspeak.
+        "xmlns:groundspeak",
+        "groundspeak:cache",
+        "id",
+        "available",
+        "archived",
+        "groundspeak:name",
+        "groundspeak:placed_by",
+        "groundspeak:owner",
+        "groundspeak:type",
+        "groundspeak:container",
+        "groundspeak:attributes",
+        "groundspeak:attribute",
+        "inc",
+        "groundspeak:difficulty",
+        "groundspeak:terrain",
+        "groundspeak:country",
+        "groundspeak:state",
+        "groundspeak:short_description",
+        "groundspeak:long_description",
+        "html",
+        "groundspeak:encoded_hints",
+        "groundspeak:logs",
+        "groundspeak:log",
+        "groundspeak:date",
+        "groundspeak:finder",
+        "groundspeak:text",
+        "encoded",
+        "groundspeak:travelbugs",
+        "groundspeak:travelbug",
+        "ref",
+        // GSAK.
+        "xmlns:gsak",
+        "gsak:wptExtension",
+        "gsak:Parent",
+        "gsak:IsPremium",
+        "gsak:FavPoints",
+    };
+
+    /** The prepared hash table containing the GPX names. */
+    private static final SymbolTable GPX_SYMBOLS = new SymbolTable(64);
+
+    static {
+        for (final String name : GPX_NAMES) {
+            GPX_SYMBOLS.intern(name);
+        }
+    }
+
+    /** The hash table using open addressing, with a power of two as length. */
+    private String[] symbols;
+
+    /** The number of names inside the table. */
+    private int count;
+
+    /**
+     * Create a new table containing the names of GPX files.
+     *
+     * <p>Each parser should use its own table, as tables are not thread-safe.
+     */
+    SymbolTable() {
+        symbols = Arrays.copyOf(GPX_SYMBOLS.symbols, GPX_SYMBOLS.symbols.length);
+        count = GPX_SYMBOLS.count;
+    }
+
+    /**
+     * Create a new empty table.
+     *
+     * @param capacity The initial capacity, which has to be a power of two.
+     */
+    private SymbolTable(final int capacity) {
+        symbols = new String[capacity * 2];
+        count = 0;
+    }
+
+    /**
+     * Get the shared instance of the given name.
+     *
+     * @param name The name to look up.
+     * @return The shared instance, which is the given one if the name is new.
+     */
+    String intern(final String name) {
+        final int mask = symbols.length - 1;
+        int index = name.hashCode() & mask;
+        String symbol;
+        while ((symbol = symbols[index]) != null) {
+            if (symbol.equals(name)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+        return add(index, name);
+    }
+
+    /**
+     * Get the shared instance of the name contained in the given characters.
+     *
+     * @param chars The characters to get the name from.
+     * @param start The index to start at.
+     * @param end The index to end with.
+     * @return The shared instance of the name.
+     */
+    String intern(final char[] chars, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        final int mask = symbols.length - 1;
+        int index = hash & mask;
+        String symbol;
+        while ((symbol = symbols[index]) != null) {
+            if (matches(symbol, chars, start, end)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+        return add(index, new String(chars, start, end - start));
+    }
+
+    /**
+     * Get the shared instance of the name contained in the given UTF-8 encoded bytes.
+     *
+     * @param buffer The buffer to get the name from.
+     * @param start The absolute index to start at.
+     * @param end The absolute index to end with.
+     * @return The shared instance of the name or <code>null</code> if the name is not plain ASCII
+     *     and has to be decoded first.
+     */
+    String intern(final ByteBuffer buffer, final int start, final int end) {
+        // For ASCII, the bytes are the characters and thus result in the same hash.
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            final byte value = buffer.get(i);
+            if (value < 0) {
+                return null;
+            }
+            hash = 31 * hash + value;
+        }
+
+        final int mask = symbols.length - 1;
+        int index = hash & mask;
+        String symbol;
+        while ((symbol = symbols[index]) != null) {
+            if (matches(symbol, buffer, start, end)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+
+        final char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) buffer.get(start + i);
+        }
+        return add(index, new String(chars));
+    }
+
+    /**
+     * Add the given name at the given free slot and grow the table if required.
+     *
+     * @param index The free slot for the name.
+     * @param name The name to add.
+     * @return The added name.
+     */
+    private String add(final int index, final String name) {
+        symbols[index] = name;
+        count++;
+
+        // Keep the table at most half full to keep the probe sequences short.
+        if (count * 2 > symbols.length) {
+            final String[] oldSymbols = symbols;
+            symbols = new String[oldSymbols.length * 2];
+            final int mask = symbols.length - 1;
+            for (final String symbol : oldSymbols) {
+                if (symbol != null) {
+                    int newIndex = symbol.hashCode() & mask;
+                    while (symbols[newIndex] != null) {
+                        newIndex = (newIndex + 1) & mask;
+                    }
+                    symbols[newIndex] = symbol;
+                }
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Check whether the given name equals the given characters.
+     *
+     * @param symbol The name to compare.
+     * @param chars The characters to compare with.
+     * @param start The index to start at.
+     * @param end The index to end with.
+     * @return Whether the name equals the characters.
+     */
+    private static boolean matches(
+            final String symbol, final char[] chars, final int start, final int end) {
+        if (symbol.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (symbol.charAt(i - start) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the given name equals the given ASCII bytes.
+     *
+     * @param symbol The name to compare.
+     * @param buffer The buffer containing the bytes to compare with.
+     * @param start The absolute index to start at.
+     * @param end The absolute index to end with.
+     * @return Whether the name equals the bytes.
+     */
+    private static boolean matches(
+            final String symbol, final ByteBuffer buffer, final int start, final int end) {
+        if (symbol.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (symbol.charAt(i - start) != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
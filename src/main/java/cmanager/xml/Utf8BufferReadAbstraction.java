@@ -0,0 +1,244 @@
+package cmanager.xml;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reading of UTF-8 encoded data which is completely available as a byte buffer, for
+ * example a memory-mapped file.
+ *
+ * <p>The data is tokenized on the raw bytes. As UTF-8 never uses bytes below <code>0x80</code>
+ * inside multi-byte sequences, all markup characters can be detected without decoding. Only the
+ * requested substrings are decoded, and tokens are decoded when they are actually used.
+ */
+class Utf8BufferReadAbstraction extends BufferReadAbstraction {
+
+    /** The data to read. */
+    private final ByteBuffer buffer;
+
+    /** The absolute position of the cursor inside the buffer. */
+    private int position;
+
+    /** The absolute end of the data inside the buffer. */
+    private final int limit;
+
+    /**
+     * Create a new instance to read the remaining data of the given buffer.
+     *
+     * <p>The position of the given buffer is not modified. A leading byte order mark is skipped.
+     *
+     * @param buffer The buffer to work on.
+     */
+    public Utf8BufferReadAbstraction(final ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        position = buffer.position();
+        limit = buffer.limit();
+
+        if (limit - position >= 3
+                && this.buffer.get(position) == (byte) 0xEF
+                && this.buffer.get(position + 1) == (byte) 0xBB
+                && this.buffer.get(position + 2) == (byte) 0xBF) {
+            position += 3;
+        }
+    }
+
+    @Override
+    public char charAt(final int index) throws EOFException {
+        if (index >= limit - position) {
+            throw new EOFException();
+        }
+
+        return (char) (buffer.get(position + index) & 0xFF);
+    }
+
+    @Override
+    public boolean available() {
+        return position < limit;
+    }
+
+    @Override
+    public void deleteUntil(final int end) {
+        position += Math.min(end, limit - position);
+    }
+
+    @Override
+    public String substring(final int start, final int end) {
+        final int available = Math.min(end, limit - position);
+
+        return available <= start ? "" : decode(position + start, position + available);
+    }
+
+    @Override
+    public String symbol(final int start, final int end, final SymbolTable symbols) {
+        final int available = Math.min(end, limit - position);
+        if (available <= start) {
+            return "";
+        }
+
+        final String symbol = symbols.intern(buffer, position + start, position + available);
+        return symbol != null
+                ? symbol
+                : symbols.intern(decode(position + start, position + available));
+    }
+
+    @Override
+    public CharSequence token(final int start, final int end) {
+        final int available = Math.min(end, limit - position);
+
+        return available <= start ? "" : new Utf8Token(position + start, position + available);
+    }
+
+    @Override
+    public int regionMatches(final int index, final String str) throws EOFException {
+        final int length = str.length();
+        for (int i = 0; i < length; i++) {
+            final char character = str.charAt(i);
+            if (character >= 0x80) {
+                return regionMatches(index, str.getBytes(StandardCharsets.UTF_8));
+            }
+            if (charAt(index + i) != character) {
+                return -1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Check whether the given bytes are found at the given index.
+     *
+     * @param index The index to check at.
+     * @param bytes The bytes to compare with.
+     * @return The number of bytes if they match or <code>-1</code> otherwise.
+     * @throws EOFException The end of the data has been reached before the end of the bytes.
+     */
+    private int regionMatches(final int index, final byte[] bytes) throws EOFException {
+        if (index + bytes.length > limit - position) {
+            throw new EOFException();
+        }
+
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(position + index + i) != bytes[i]) {
+                return -1;
+            }
+        }
+        return bytes.length;
+    }
+
+    @Override
+    public int indexOf(final String str) {
+        // Most searches are for a single markup character.
+        if (str.length() == 1 && str.charAt(0) < 0x80) {
+            final byte value = (byte) str.charAt(0);
+            for (int i = position; i < limit; i++) {
+                if (buffer.get(i) == value) {
+                    return i - position;
+                }
+            }
+            return -1;
+        }
+
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        final byte first = bytes[0];
+        for (int j = position; j + bytes.length <= limit; j++) {
+            if (buffer.get(j) != first) {
+                continue;
+            }
+            boolean match = true;
+            for (int i = 1; i < bytes.length; i++) {
+                if (buffer.get(j + i) != bytes[i]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return j - position;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public StringBuilder toStringBuilder() {
+        final StringBuilder stringBuilder = new StringBuilder(decode(position, limit));
+        position = limit;
+        return stringBuilder;
+    }
+
+    /**
+     * Decode the given absolute range of the buffer.
+     *
+     * @param start The absolute index to start at.
+     * @param end The absolute index to end with.
+     * @return The decoded string.
+     */
+    private String decode(final int start, final int end) {
+        // Most of the data is plain ASCII, which can be copied directly.
+        final int length = end - start;
+        final char[] chars = new char[length];
+        int i = 0;
+        while (i < length) {
+            final byte value = buffer.get(start + i);
+            if (value < 0) {
+                break;
+            }
+            chars[i++] = (char) value;
+        }
+        if (i == length) {
+            return new String(chars);
+        }
+
+        // Decode the remaining data as UTF-8.
+        final ByteBuffer remaining = buffer.duplicate();
+        remaining.position(start + i);
+        remaining.limit(end);
+        return new String(chars, 0, i) + StandardCharsets.UTF_8.decode(remaining);
+    }
+
+    /** A part of the buffer which is decoded on the first access. */
+    private class Utf8Token implements CharSequence {
+
+        /** The absolute index to start at. */
+        private final int start;
+
+        /** The absolute index to end with. */
+        private final int end;
+
+        /** The decoded value or <code>null</code> if it has not been decoded yet. */
+        private String value = null;
+
+        /**
+         * Create a new token for the given absolute range.
+         *
+         * @param start The absolute index to start at.
+         * @param end The absolute index to end with.
+         */
+        Utf8Token(final int start, final int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (value == null) {
+                value = decode(start, end);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package cmanager.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Buffered writing of UTF-8 encoded data.
+ *
+ * <p>The strings are encoded directly into a reusable byte buffer, without the per-character
+ * overhead of a charset encoder. The indentation and the tags of each element name are only
+ * encoded once. Without an output stream, the buffer grows to keep all data in memory.
+ */
+class Utf8ByteWriteAbstraction extends BufferWriteAbstraction {
+
+    /** The size of the buffer when writing to a stream. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The initial size of the buffer when keeping the data in memory. */
+    private static final int INITIAL_MEMORY_SIZE = 8 * 1024;
+
+    /** The spaces to copy the indentation from. */
+    private static final byte[] SPACES = new byte[256];
+
+    static {
+        Arrays.fill(SPACES, (byte) ' ');
+    }
+
+    /** The stream to write to or <code>null</code> if the data is kept in memory. */
+    private final OutputStream outputStream;
+
+    /** Whether to indent the lines according to the level of the elements. */
+    private final boolean indent;
+
+    /** The buffer holding the encoded data which has not been written yet. */
+    private byte[] buffer;
+
+    /** The number of valid bytes inside the buffer. */
+    private int count = 0;
+
+    /** The encoded start tags by element name. */
+    private final Map<String, byte[]> startTags = new HashMap<>();
+
+    /** The encoded end tags by element name. */
+    private final Map<String, byte[]> endTags = new HashMap<>();
+
+    /**
+     * Create a new instance writing to the given stream.
+     *
+     * @param outputStream The stream to write to. This will not be closed.
+     * @param indent Whether to indent the lines according to the level of the elements.
+     */
+    public Utf8ByteWriteAbstraction(final OutputStream outputStream, final boolean indent) {
+        this.outputStream = outputStream;
+        this.indent = indent;
+        buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Create a new instance keeping the data in memory.
+     *
+     * @param indent Whether to indent the lines according to the level of the elements.
+     */
+    public Utf8ByteWriteAbstraction(final boolean indent) {
+        outputStream = null;
+        this.indent = indent;
+        buffer = new byte[INITIAL_MEMORY_SIZE];
+    }
+
+    @Override
+    public BufferWriteAbstraction append(final String string) throws IOException {
+        final int length = string.length();
+        int index = 0;
+        while (index < length) {
+            // Each character requires up to three bytes, surrogate pairs four bytes for two.
+            if (buffer.length - count < 8) {
+                makeRoom(8);
+            }
+            final int end = Math.min(length, index + (buffer.length - count - 4) / 3);
+            index = encode(string, index, end, length);
+        }
+        return this;
+    }
+
+    @Override
+    public BufferWriteAbstraction appendEscaped(final String string) throws IOException {
+        return append(XmlEscaper.escape(string));
+    }
+
+    @Override
+    public BufferWriteAbstraction appendIndentation(final int level) throws IOException {
+        if (!indent) {
+            return this;
+        }
+
+        int remaining = level * 2;
+        while (remaining > 0) {
+            final int length = Math.min(remaining, SPACES.length);
+            write(SPACES, length);
+            remaining -= length;
+        }
+        return this;
+    }
+
+    @Override
+    public BufferWriteAbstraction appendStartTag(final String name) throws IOException {
+        byte[] tag = startTags.get(name);
+        if (tag == null) {
+            tag = ("<" + name).getBytes(StandardCharsets.UTF_8);
+            startTags.put(name, tag);
+        }
+        write(tag, tag.length);
+        return this;
+    }
+
+    @Override
+    public BufferWriteAbstraction appendEndTag(final String name) throws IOException {
+        byte[] tag = endTags.get(name);
+        if (tag == null) {
+            tag = ("</" + name + ">\n").getBytes(StandardCharsets.UTF_8);
+            endTags.put(name, tag);
+        }
+        write(tag, tag.length);
+        return this;
+    }
+
+    @Override
+    public BufferWriteAbstraction append(final BufferWriteAbstraction bufferWriteAbstraction)
+            throws IOException {
+        if (bufferWriteAbstraction instanceof Utf8ByteWriteAbstraction) {
+            final Utf8ByteWriteAbstraction other =
+                    (Utf8ByteWriteAbstraction) bufferWriteAbstraction;
+            if (other.outputStream == null) {
+                write(other.buffer, other.count);
+                return this;
+            }
+        }
+        return super.append(bufferWriteAbstraction);
+    }
+
+    @Override
+    public BufferWriteAbstraction createBuffer() {
+        return new Utf8ByteWriteAbstraction(indent);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (outputStream != null) {
+            outputStream.write(buffer, 0, count);
+            count = 0;
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Convert the data kept in memory to a string.
+     *
+     * @return The buffer content as a string.
+     */
+    @Override
+    public String toString() {
+        if (outputStream != null) {
+            throw new UnsupportedOperationException();
+        }
+        return new String(buffer, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode the given range of the string into the buffer, which has to provide enough room.
+     *
+     * @param string The string to encode.
+     * @param start The index of the first character to encode.
+     * @param end The index after the last character to encode.
+     * @param length The length of the string.
+     * @return The index after the last encoded character. This is after the end if the range
+     *     ends with the first character of a surrogate pair.
+     */
+    private int encode(final String string, final int start, final int end, final int length) {
+        final byte[] bytes = buffer;
+        int position = count;
+        int index = start;
+        while (index < end) {
+            final char character = string.charAt(index++);
+            if (character < 0x80) {
+                bytes[position++] = (byte) character;
+            } else if (character < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (character >> 6));
+                bytes[position++] = (byte) (0x80 | (character & 0x3F));
+            } else if (!Character.isSurrogate(character)) {
+                bytes[position++] = (byte) (0xE0 | (character >> 12));
+                bytes[position++] = (byte) (0x80 | ((character >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (character & 0x3F));
+            } else if (Character.isHighSurrogate(character)
+                    && index < length
+                    && Character.isLowSurrogate(string.charAt(index))) {
+                final int codePoint = Character.toCodePoint(character, string.charAt(index++));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // Unpaired surrogates are replaced like the charset encoder does.
+                bytes[position++] = '?';
+            }
+        }
+        count = position;
+        return index;
+    }
+
+    /**
+     * Append the given bytes to the buffer.
+     *
+     * @param bytes The bytes to append.
+     * @param length The number of bytes to append, starting at the first one.
+     * @throws IOException Something went wrong when writing the buffered data.
+     */
+    private void write(final byte[] bytes, final int length) throws IOException {
+        if (buffer.length - count < length) {
+            makeRoom(length);
+        }
+        if (buffer.length - count < length) {
+            // Larger than the whole buffer, so write it directly.
+            outputStream.write(bytes, 0, length);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, count, length);
+        count += length;
+    }
+
+    /**
+     * Make room for the given number of bytes, either by writing the buffered data or by growing
+     * the buffer if the data is kept in memory.
+     *
+     * <p>When writing to a stream, the buffer might still be too small afterwards.
+     *
+     * @param required The number of bytes required.
+     * @throws IOException Something went wrong when writing the buffered data.
+     */
+    private void makeRoom(final int required) throws IOException {
+        if (outputStream != null) {
+            outputStream.write(buffer, 0, count);
+            count = 0;
+        } else {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + required));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package cmanager.xml;
+
+import java.io.IOException;
+
+/**
+ * Escaping and unescaping of XML text.
+ *
+ * <p>The results are identical to <code>StringEscapeUtils.escapeXml11</code> and <code>
+ * StringEscapeUtils.unescapeXml</code> of Apache Commons Text. Most of the texts of GPX files do
+ * not contain any characters to replace, so the texts are scanned first and returned unchanged if
+ * possible, without allocating anything.
+ */
+public final class XmlEscaper {
+
+    /** Utility class. */
+    private XmlEscaper() {}
+
+    /**
+     * Escape the given text for XML 1.1.
+     *
+     * @param text The text to escape.
+     * @return The escaped text. This is the given instance if there is nothing to escape.
+     */
+    public static String escape(final String text) {
+        if (text == null) {
+            return null;
+        }
+
+        final int first = indexOfEscape(text, 0);
+        if (first == -1) {
+            return text;
+        }
+
+        final StringBuilder stringBuilder = new StringBuilder(text.length() + 16);
+        try {
+            escape(text, first, stringBuilder);
+        } catch (IOException exception) {
+            // A string builder does not throw.
+            throw new IllegalStateException(exception);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Escape the given text for XML 1.1 and append it to the given output.
+     *
+     * @param text The text to escape.
+     * @param out The output to append the escaped text to.
+     * @throws IOException The text could not be appended.
+     */
+    public static void escape(final String text, final Appendable out) throws IOException {
+        final int first = indexOfEscape(text, 0);
+        if (first == -1) {
+            out.append(text);
+        } else {
+            escape(text, first, out);
+        }
+    }
+
+    /**
+     * Unescape the predefined and numeric entity references of the given text.
+     *
+     * @param text The text to unescape.
+     * @return The unescaped text. This is the given instance if there is nothing to unescape.
+     */
+    public static String unescape(final String text) {
+        if (text == null) {
+            return null;
+        }
+
+        int ampersand = text.indexOf('&');
+        if (ampersand == -1) {
+            return text;
+        }
+
+        final StringBuilder stringBuilder = new StringBuilder(text.length());
+        int runStart = 0;
+        while (ampersand != -1) {
+            stringBuilder.append(text, runStart, ampersand);
+            final int consumed = unescapeEntity(text, ampersand, stringBuilder);
+            if (consumed == 0) {
+                stringBuilder.append('&');
+                runStart = ampersand + 1;
+            } else {
+                runStart = ampersand + consumed;
+            }
+            ampersand = text.indexOf('&', runStart);
+        }
+        stringBuilder.append(text, runStart, text.length());
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Escape the given text, starting with the first character to replace.
+     *
+     * @param text The text to escape.
+     * @param first The index of the first character to replace.
+     * @param out The output to append the escaped text to.
+     * @throws IOException The text could not be appended.
+     */
+    private static void escape(final String text, final int first, final Appendable out)
+            throws IOException {
+        int runStart = 0;
+        int index = first;
+        while (index != -1) {
+            out.append(text, runStart, index);
+
+            final char character = text.charAt(index);
+            switch (character) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\'':
+                    out.append("&apos;");
+                    break;
+                case '\u0000':
+                case '\uFFFE':
+                case '\uFFFF':
+                    // Not allowed in XML at all, so drop it.
+                    break;
+                default:
+                    // Unpaired surrogates are dropped, control characters are written as
+                    // numeric entity references.
+                    if (!Character.isSurrogate(character)) {
+                        out.append("&#").append(Integer.toString(character)).append(';');
+                    }
+                    break;
+            }
+
+            runStart = index + 1;
+            index = indexOfEscape(text, runStart);
+        }
+        out.append(text, runStart, text.length());
+    }
+
+    /**
+     * Find the next character which has to be replaced when escaping.
+     *
+     * @param text The text to search in.
+     * @param from The index to start searching at.
+     * @return The index of the next character to replace or <code>-1</code> if there is none.
+     */
+    private static int indexOfEscape(final String text, final int from) {
+        final int length = text.length();
+        for (int i = from; i < length; i++) {
+            final char character = text.charAt(i);
+            if (character >= 0x20 && character < 0x7F) {
+                if (character == '&'
+                        || character == '<'
+                        || character == '>'
+                        || character == '"'
+                        || character == '\'') {
+                    return i;
+                }
+            } else if (character < 0x20) {
+                if (character != '\t' && character != '\n' && character != '\r') {
+                    return i;
+                }
+            } else if (character <= 0x9F) {
+                if (character != 0x85) {
+                    return i;
+                }
+            } else if (Character.isHighSurrogate(character)) {
+                if (i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    i++;
+                } else {
+                    return i;
+                }
+            } else if (Character.isLowSurrogate(character) || character >= 0xFFFE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Unescape the entity reference at the given position.
+     *
+     * <p>Numeric references require a terminating semicolon. Invalid references are kept.
+     *
+     * @param text The text to unescape.
+     * @param index The index of the <code>&amp;</code>.
+     * @param out The output to append the unescaped character to.
+     * @return The number of characters of the reference, or <code>0</code> if there is no valid
+     *     reference.
+     */
+    private static int unescapeEntity(final String text, final int index, final StringBuilder out) {
+        if (text.startsWith("&quot;", index)) {
+            out.append('"');
+            return 6;
+        }
+        if (text.startsWith("&amp;", index)) {
+            out.append('&');
+            return 5;
+        }
+        if (text.startsWith("&lt;", index)) {
+            out.append('<');
+            return 4;
+        }
+        if (text.startsWith("&gt;", index)) {
+            out.append('>');
+            return 4;
+        }
+        if (text.startsWith("&apos;", index)) {
+            out.append('\'');
+            return 6;
+        }
+
+        // Numeric references.
+        final int length = text.length();
+        if (index >= length - 2 || text.charAt(index + 1) != '#') {
+            return 0;
+        }
+        int start = index + 2;
+        final boolean hexadecimal = text.charAt(start) == 'x' || text.charAt(start) == 'X';
+        if (hexadecimal) {
+            start++;
+            if (start == length) {
+                return 0;
+            }
+        }
+
+        int end = start;
+        while (end < length && isHexDigit(text.charAt(end))) {
+            end++;
+        }
+        if (end == length || text.charAt(end) != ';') {
+            return 0;
+        }
+
+        final int value;
+        try {
+            value = Integer.parseInt(text.substring(start, end), hexadecimal ? 16 : 10);
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+        if (value > 0xFFFF) {
+            out.append(Character.toChars(value));
+        } else {
+            out.append((char) value);
+        }
+        return end + 1 - index;
+    }
+
+    /**
+     * Check whether the given character is a hexadecimal digit.
+     *
+     * @param character The character to check.
+     * @return Whether the character is a digit or one of the letters a to f.
+     */
+    private static boolean isHexDigit(final char character) {
+        return (character >= '0' && character <= '9')
+                || (character >= 'a' && character <= 'f')
+                || (character >= 'A' && character <= 'F');
+    }
+}
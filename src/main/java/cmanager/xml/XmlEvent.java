@@ -0,0 +1,16 @@
+package cmanager.xml;
+
+/** The events reported by the XML pull parser. */
+public enum XmlEvent {
+    /** An element has been opened. The name and the attributes are available. */
+    START_ELEMENT,
+
+    /** An element has been closed. The name is available. */
+    END_ELEMENT,
+
+    /** Some non-empty text has been found inside an element. */
+    TEXT,
+
+    /** The end of the data has been reached. */
+    END_DOCUMENT
+}
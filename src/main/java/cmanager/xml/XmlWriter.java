@@ -0,0 +1,332 @@
+package cmanager.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming writer for XML files.
+ *
+ * <p>In contrast to {@link Parser#xmlToBuffer(Element, OutputStream)}, this does not require an
+ * element tree, but writes the elements while they are reported by the caller. The output is the
+ * same as for the corresponding shrunk tree: elements without a body, attributes and (written)
+ * children are skipped.
+ *
+ * <p>To allow this, start tags are only written once the first non-empty child has been written or
+ * once the element is closed.
+ */
+public class XmlWriter {
+
+    /** The buffer to write to. */
+    private final BufferWriteAbstraction writer;
+
+    /** The currently opened elements, with the innermost element being the last. */
+    private final List<OpenElement> openElements = new ArrayList<>();
+
+    /** The number of currently opened elements. */
+    private int depth = 0;
+
+    /**
+     * Create a new writer for the given stream. The data will be UTF-8 encoded.
+     *
+     * @param outputStream The stream to write to. This will not be closed by the writer.
+     */
+    public XmlWriter(final OutputStream outputStream) {
+        this(outputStream, true);
+    }
+
+    /**
+     * Create a new writer for the given stream. The data will be UTF-8 encoded.
+     *
+     * @param outputStream The stream to write to. This will not be closed by the writer.
+     * @param indent Whether to indent the lines according to the level of the elements.
+     */
+    public XmlWriter(final OutputStream outputStream, final boolean indent) {
+        writer = new Utf8ByteWriteAbstraction(outputStream, indent);
+    }
+
+    /**
+     * Write the XML declaration.
+     *
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public void writeDeclaration() throws IOException {
+        writer.append("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n");
+    }
+
+    /**
+     * Open a new element as a child of the current element.
+     *
+     * @param name The name of the element.
+     * @return The current writer instance.
+     */
+    public XmlWriter startElement(final String name) {
+        if (depth == openElements.size()) {
+            openElements.add(new OpenElement());
+        }
+        openElements.get(depth++).reset(name);
+        return this;
+    }
+
+    /**
+     * Add an attribute to the current element.
+     *
+     * <p>Attributes without a value are not written, but still prevent the element from being
+     * skipped.
+     *
+     * @param name The name of the attribute.
+     * @param value The (unescaped) value of the attribute.
+     * @return The current writer instance.
+     */
+    public XmlWriter attribute(final String name, final String value) {
+        final OpenElement element = current();
+        if (element.opened) {
+            throw new IllegalStateException();
+        }
+
+        element.hasAttributes = true;
+        if (value != null) {
+            element.attributes
+                    .append(' ')
+                    .append(name)
+                    .append("=\"")
+                    .append(XmlEscaper.escape(value))
+                    .append('"');
+        }
+        return this;
+    }
+
+    /**
+     * Add an attribute with a double value to the current element.
+     *
+     * @param name The name of the attribute.
+     * @param value The value of the attribute.
+     * @return The current writer instance.
+     */
+    public XmlWriter attribute(final String name, final Double value) {
+        return attribute(name, value != null ? value.toString() : null);
+    }
+
+    /**
+     * Add an attribute with an integer value to the current element.
+     *
+     * @param name The name of the attribute.
+     * @param value The value of the attribute.
+     * @return The current writer instance.
+     */
+    public XmlWriter attribute(final String name, final Integer value) {
+        return attribute(name, value != null ? value.toString() : null);
+    }
+
+    /**
+     * Add an attribute with a boolean value to the current element.
+     *
+     * <p>As for {@link XmlAttribute}, the value is written as <code>True</code> or <code>False
+     * </code>.
+     *
+     * @param name The name of the attribute.
+     * @param value The value of the attribute.
+     * @return The current writer instance.
+     */
+    public XmlWriter attribute(final String name, final Boolean value) {
+        return attribute(name, value == null ? null : value ? "True" : "False");
+    }
+
+    /**
+     * Set the body of the current element. It will be written after the children.
+     *
+     * @param body The (unescaped) body.
+     * @return The current writer instance.
+     */
+    public XmlWriter body(final String body) {
+        current().body = body;
+        return this;
+    }
+
+    /**
+     * Close the current element.
+     *
+     * @return The current writer instance.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public XmlWriter endElement() throws IOException {
+        final OpenElement element = current();
+        final int level = depth - 1;
+
+        if (element.opened) {
+            // The children have been written already.
+            if (element.body != null) {
+                writer.appendEscaped(element.body);
+            } else {
+                writer.appendIndentation(level);
+            }
+            writer.appendEndTag(element.name);
+        } else if (element.body != null) {
+            openParent(level);
+            writeStartTag(element, level);
+            writer.append(">").appendEscaped(element.body).appendEndTag(element.name);
+        } else if (element.hasAttributes) {
+            openParent(level);
+            writeStartTag(element, level);
+            writer.append(" />\n");
+        }
+
+        // Otherwise the element is empty and will be skipped.
+        depth--;
+        return this;
+    }
+
+    /**
+     * Write an element with the given body and without attributes and children. Nothing will be
+     * written if the body is <code>null</code>.
+     *
+     * @param name The name of the element.
+     * @param body The (unescaped) body of the element.
+     * @return The current writer instance.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public XmlWriter element(final String name, final String body) throws IOException {
+        if (body != null) {
+            startElement(name).body(body).endElement();
+        }
+        return this;
+    }
+
+    /**
+     * Write an element with the given double body.
+     *
+     * @param name The name of the element.
+     * @param body The body of the element.
+     * @return The current writer instance.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public XmlWriter element(final String name, final Double body) throws IOException {
+        return element(name, body != null ? body.toString() : null);
+    }
+
+    /**
+     * Write an element with the given integer body.
+     *
+     * @param name The name of the element.
+     * @param body The body of the element.
+     * @return The current writer instance.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public XmlWriter element(final String name, final Integer body) throws IOException {
+        return element(name, body != null ? body.toString() : null);
+    }
+
+    /**
+     * Write an element with the given boolean body.
+     *
+     * <p>As for {@link Element}, the value is written as <code>true</code> or <code>false</code>.
+     *
+     * @param name The name of the element.
+     * @param body The body of the element.
+     * @return The current writer instance.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public XmlWriter element(final String name, final Boolean body) throws IOException {
+        return element(name, body != null ? body.toString() : null);
+    }
+
+    /**
+     * Flush the written data to the underlying stream.
+     *
+     * @throws IOException Something went wrong when writing the data.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Get the innermost opened element.
+     *
+     * @return The current element.
+     */
+    private OpenElement current() {
+        if (depth == 0) {
+            throw new IllegalStateException();
+        }
+        return openElements.get(depth - 1);
+    }
+
+    /**
+     * Write the start tags of the parents of the element at the given level, as the element is not
+     * empty.
+     *
+     * @param level The level of the element whose parents are required.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    private void openParent(final int level) throws IOException {
+        if (level > 0) {
+            open(level - 1);
+        }
+    }
+
+    /**
+     * Write the start tags of the given element and its parents, if they have not been written
+     * yet.
+     *
+     * @param level The level of the element to write the start tag for.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    private void open(final int level) throws IOException {
+        final OpenElement element = openElements.get(level);
+        if (element.opened) {
+            return;
+        }
+        openParent(level);
+
+        writeStartTag(element, level);
+        writer.append(">\n");
+        element.opened = true;
+    }
+
+    /**
+     * Write the start tag of the given element without the closing <code>&gt;</code>.
+     *
+     * @param element The element to write the start tag for.
+     * @param level The level of the element.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    private void writeStartTag(final OpenElement element, final int level) throws IOException {
+        writer.appendIndentation(level).appendStartTag(element.name);
+        if (element.attributes.length() != 0) {
+            writer.append(element.attributes.toString());
+        }
+    }
+
+    /** An element which has been started, but not been closed yet. */
+    private static class OpenElement {
+
+        /** The name of the element. */
+        private String name;
+
+        /** The serialized attributes with a leading space each. */
+        private final StringBuilder attributes = new StringBuilder();
+
+        /** Whether there has been any attribute, including attributes without a value. */
+        private boolean hasAttributes;
+
+        /** The body of the element. */
+        private String body;
+
+        /** Whether the start tag has been written already. */
+        private boolean opened;
+
+        /**
+         * Reset the element to be reused for a new element.
+         *
+         * @param name The name of the new element.
+         */
+        private void reset(final String name) {
+            this.name = name;
+            attributes.setLength(0);
+            hasAttributes = false;
+            body = null;
+            opened = false;
+        }
+    }
+}
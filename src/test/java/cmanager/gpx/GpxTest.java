@@ -0,0 +1,347 @@
+package cmanager.gpx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cmanager.exception.MalFormedException;
+import cmanager.geo.Geocache;
+import cmanager.geo.Waypoint;
+import cmanager.xml.PullParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the GPX handling. */
+public class GpxTest {
+
+    /** Some GPX data with a geocache and an additional waypoint. */
+    private static final String GPX =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                    + "<gpx version=\"1.0\" creator=\"test\">\n"
+                    + "  <name>Test</name>\n"
+                    + "  <wpt lat=\"48.1\" lon=\"11.5\">\n"
+                    + "    <time>2010-01-01T00:00:00Z</time>\n"
+                    + "    <name>GC1234</name>\n"
+                    + "    <urlname>Url name</urlname>\n"
+                    + "    <unknown><name>Ignored</name></unknown>\n"
+                    + "    <groundspeak:cache id=\"42\" archived=\"False\" available=\"True\">\n"
+                    + "      <groundspeak:name>Tom &amp; Jerry</groundspeak:name>\n"
+                    + "      <groundspeak:type>Traditional Cache</groundspeak:type>\n"
+                    + "      <groundspeak:owner>Owner</groundspeak:owner>\n"
+                    + "      <groundspeak:container>Small</groundspeak:container>\n"
+                    + "      <groundspeak:difficulty>1.5</groundspeak:difficulty>\n"
+                    + "      <groundspeak:terrain>2</groundspeak:terrain>\n"
+                    + "      <groundspeak:attributes>\n"
+                    + "        <groundspeak:attribute id=\"1\" inc=\"1\">"
+                    + "Dogs</groundspeak:attribute>\n"
+                    + "      </groundspeak:attributes>\n"
+                    + "      <groundspeak:logs>\n"
+                    + "        <groundspeak:log id=\"-2\">\n"
+                    + "          <groundspeak:type>Write note</groundspeak:type>\n"
+                    + "        </groundspeak:log>\n"
+                    + "        <groundspeak:log id=\"1\">\n"
+                    + "          <groundspeak:date>2011-01-01T00:00:00Z</groundspeak:date>\n"
+                    + "          <groundspeak:type>Found it</groundspeak:type>\n"
+                    + "          <groundspeak:finder id=\"1\">Finder</groundspeak:finder>\n"
+                    + "          <groundspeak:text encoded=\"False\">TFTC</groundspeak:text>\n"
+                    + "        </groundspeak:log>\n"
+                    + "      </groundspeak:logs>\n"
+                    + "    </groundspeak:cache>\n"
+                    + "    <gsak:wptExtension>\n"
+                    + "      <gsak:FavPoints>7</gsak:FavPoints>\n"
+                    + "    </gsak:wptExtension>\n"
+                    + "  </wpt>\n"
+                    + "  <wpt lat=\"48.2\" lon=\"11.6\">\n"
+                    + "    <name>PK1234</name>\n"
+                    + "    <desc>Parking</desc>\n"
+                    + "    <type>Waypoint|Parking Area</type>\n"
+                    + "    <gsak:wptExtension>\n"
+                    + "      <gsak:Parent>GC1234</gsak:Parent>\n"
+                    + "    </gsak:wptExtension>\n"
+                    + "  </wpt>\n"
+                    + "</gpx>\n";
+
+    /** Test loading geocaches and waypoints. */
+    @Test
+    @DisplayName("Test loading GPX data")
+    public void testLoadFromStream() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+        Gpx.loadFromStream(toStream(GPX), geocaches, waypoints);
+
+        assertEquals(1, geocaches.size());
+        final Geocache geocache = geocaches.get(0);
+        assertEquals("GC1234", geocache.getCode());
+        assertEquals("Tom & Jerry", geocache.getName());
+        assertEquals("1.5", geocache.getDifficulty().toString());
+        assertEquals("Owner", geocache.getOwner());
+        assertEquals("Small", geocache.getContainer().asGc());
+        assertEquals(42, geocache.getId().intValue());
+        assertEquals(7, geocache.getFavoritePoints().intValue());
+        assertEquals(1, geocache.getAttributes().size());
+        assertEquals("Dogs", geocache.getAttributes().get(0).getDescription());
+        assertEquals(1, geocache.getLogs().size());
+        assertEquals("Finder", geocache.getLogs().get(0).getAuthor());
+        assertEquals("TFTC", geocache.getLogs().get(0).getText());
+
+        assertEquals(1, waypoints.size());
+        assertEquals("PK1234", waypoints.get(0).getCode());
+        assertEquals("Parking", waypoints.get(0).getDescription());
+        assertEquals("GC1234", waypoints.get(0).getParent());
+    }
+
+    /** Test that loading from a buffer yields the same data as loading from a stream. */
+    @Test
+    @DisplayName("Test loading GPX data from a buffer")
+    public void testLoadFromBuffer() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+        Gpx.loadFromBuffer(toBuffer(GPX), geocaches, waypoints);
+
+        assertEquals(1, geocaches.size());
+        assertEquals("Tom & Jerry", geocaches.get(0).getName());
+        assertEquals("TFTC", geocaches.get(0).getLogs().get(0).getText());
+        assertEquals(1, waypoints.size());
+        assertEquals("GC1234", waypoints.get(0).getParent());
+    }
+
+    /** Test that written geocaches can be loaded again. */
+    @Test
+    @DisplayName("Test writing GPX data")
+    public void testWrite() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        Gpx.loadFromStream(toStream(GPX), geocaches, new ArrayList<>());
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new GpxWriter(outputStream).write(geocaches, "Tom & Jerry");
+        final String written = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(written.contains("  <name>Tom &amp; Jerry</name>\n"));
+        assertFalse(written.contains("<groundspeak:short_description"));
+
+        final List<Geocache> loaded = new ArrayList<>();
+        Gpx.loadFromStream(toStream(written), loaded, new ArrayList<>());
+        assertEquals(1, loaded.size());
+        final Geocache geocache = loaded.get(0);
+        assertEquals("GC1234", geocache.getCode());
+        assertEquals("Tom & Jerry", geocache.getName());
+        assertEquals(7, geocache.getFavoritePoints().intValue());
+        assertEquals("Dogs", geocache.getAttributes().get(0).getDescription());
+        assertEquals("TFTC", geocache.getLogs().get(0).getText());
+    }
+
+    /** Test that escaped markup inside the values survives writing and loading again. */
+    @Test
+    @DisplayName("Test writing escaped values")
+    public void testWriteEscaped() throws Throwable {
+        final String data =
+                GPX.replace("TFTC", "&amp;lt;b&amp;gt;TFTC")
+                        .replace("Dogs", "Dogs &amp;amp; cats")
+                        .replace(">Owner<", ">&amp;lt;Owner&amp;gt;<");
+        final List<Geocache> geocaches = new ArrayList<>();
+        Gpx.loadFromStream(toStream(data), geocaches, new ArrayList<>());
+        geocaches.get(0).setListing("&lt;p&gt;A &amp;lt; B");
+        assertEquals("&lt;b&gt;TFTC", geocaches.get(0).getLogs().get(0).getText());
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new GpxWriter(outputStream).write(geocaches, "Test");
+        final String written = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(written.contains(">&amp;lt;b&amp;gt;TFTC</groundspeak:text>"));
+
+        final List<Geocache> loaded = new ArrayList<>();
+        Gpx.loadFromStream(toStream(written), loaded, new ArrayList<>());
+        final Geocache geocache = loaded.get(0);
+        assertEquals("&lt;p&gt;A &amp;lt; B", geocache.getListing());
+        assertEquals("&lt;b&gt;TFTC", geocache.getLogs().get(0).getText());
+        assertEquals("Dogs &amp; cats", geocache.getAttributes().get(0).getDescription());
+        assertEquals("&lt;Owner&gt;", geocache.getOwner());
+    }
+
+    /** Test that loading chunks concurrently yields the same data as loading sequentially. */
+    @Test
+    @DisplayName("Test loading GPX data in chunks")
+    public void testLoadChunked() throws Throwable {
+        final StringBuilder data = new StringBuilder("<?xml version=\"1.0\"?>\n<gpx>\n");
+        for (int i = 0; i < 100; i++) {
+            data.append(i % 3 == 0 ? "<wpt lat=\"1\" lon=\"2\"><name>PK" : "<wpt><name>WP");
+            data.append(i).append("</name></wpt>\n");
+        }
+        data.append("<!-- <wpt> -->\n</gpx>\n");
+        final ByteBuffer byteBuffer = toBuffer(data.toString());
+
+        final List<Waypoint> expected = new ArrayList<>();
+        Gpx.loadFromStream(toStream(data.toString()), new ArrayList<>(), expected);
+        final List<Waypoint> actual = new ArrayList<>();
+        assertTrue(ChunkedGpxLoader.load(byteBuffer, 7, new ArrayList<>(), actual, GpxField.all()));
+
+        assertEquals(100, actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCode(), actual.get(i).getCode());
+        }
+    }
+
+    /** Test that loading GPX streams in batches yields the same data as loading them at once. */
+    @Test
+    @DisplayName("Test loading GPX streams in batches")
+    public void testLoadBatched() throws Throwable {
+        final String waypoint = GPX.substring(GPX.indexOf("<wpt"), GPX.indexOf("</gpx>"));
+        final StringBuilder data = new StringBuilder(GPX.substring(0, GPX.indexOf("<wpt")));
+        while (data.length() < 3 * BatchedGpxLoader.BATCH_SIZE) {
+            data.append(waypoint).append("<!-- </wpt> -->");
+        }
+        data.append("</gpx>\n");
+
+        final List<Geocache> expectedGeocaches = new ArrayList<>();
+        final List<Waypoint> expectedWaypoints = new ArrayList<>();
+        Gpx.loadFromStream(toStream(data.toString()), expectedGeocaches, expectedWaypoints);
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+        BatchedGpxLoader.load(
+                toStream(data.toString()), 3, geocaches, waypoints, GpxField.all());
+
+        assertEquals(expectedGeocaches.size(), geocaches.size());
+        assertEquals(expectedWaypoints.size(), waypoints.size());
+        for (int i = 0; i < geocaches.size(); i++) {
+            assertEquals(expectedGeocaches.get(i).toString(), geocaches.get(i).toString());
+            assertEquals(
+                    expectedGeocaches.get(i).getLogs().get(0).getText(),
+                    geocaches.get(i).getLogs().get(0).getText());
+        }
+        assertEquals("GC1234", waypoints.get(waypoints.size() - 1).getParent());
+
+        assertThrows(
+                MalFormedException.class,
+                () ->
+                        BatchedGpxLoader.load(
+                                toStream("<gpx><wpt><name>A</wpt></gpx>"),
+                                2,
+                                geocaches,
+                                waypoints,
+                                GpxField.all()));
+    }
+
+    /** Test that data which cannot be split safely is rejected by the chunked loader. */
+    @Test
+    @DisplayName("Test loading unsplittable GPX data in chunks")
+    public void testLoadChunkedFallback() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+
+        // The waypoints are not direct children of the root element.
+        assertFalse(
+                ChunkedGpxLoader.load(
+                        toBuffer("<gpx><a><wpt><name>A</name></wpt></a></gpx>"),
+                        2,
+                        geocaches,
+                        waypoints,
+                        GpxField.all()));
+        // A chunk boundary is located inside a comment.
+        assertFalse(
+                ChunkedGpxLoader.load(
+                        toBuffer(
+                                "<gpx><wpt><name>A</name></wpt><!-- <wpt></wpt> -->"
+                                        + "<wpt><name>B</name></wpt></gpx>"),
+                        3,
+                        geocaches,
+                        waypoints,
+                        GpxField.all()));
+        assertTrue(geocaches.isEmpty() && waypoints.isEmpty());
+    }
+
+    /** Test that excluded fields are skipped while the remaining data is loaded. */
+    @Test
+    @DisplayName("Test loading selected fields")
+    public void testLoadFields() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+        Gpx.loadFromBuffer(
+                toBuffer(GPX), geocaches, waypoints, EnumSet.of(GpxField.ATTRIBUTES));
+
+        final Geocache geocache = geocaches.get(0);
+        assertEquals("Tom & Jerry", geocache.getName());
+        assertEquals(7, geocache.getFavoritePoints().intValue());
+        assertEquals(1, geocache.getAttributes().size());
+        assertTrue(geocache.getLogs().isEmpty());
+        assertEquals("GC1234", waypoints.get(0).getParent());
+
+        geocaches.clear();
+        Gpx.loadFromStream(toStream(GPX), geocaches, new ArrayList<>(), GpxField.none());
+        assertEquals("Owner", geocaches.get(0).getOwner());
+        assertTrue(geocaches.get(0).getAttributes().isEmpty());
+        assertTrue(geocaches.get(0).getLogs().isEmpty());
+    }
+
+    /** Test that misplaced waypoints are rejected. */
+    @Test
+    @DisplayName("Test misplaced waypoints")
+    public void testMisplacedWaypoint() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+
+        assertThrows(
+                MalFormedException.class,
+                () -> Gpx.loadFromStream(toStream("<wpt></wpt>"), geocaches, waypoints));
+        assertThrows(
+                MalFormedException.class,
+                () ->
+                        Gpx.loadFromStream(
+                                toStream("<gpx><a><wpt></wpt></a></gpx>"),
+                                geocaches,
+                                waypoints));
+        Gpx.loadFromStream(toStream("<gpx></gpx>"), geocaches, waypoints);
+        assertTrue(geocaches.isEmpty() && waypoints.isEmpty());
+    }
+
+    /** Test that geocaches which cannot be deserialized are kept as plain waypoints. */
+    @Test
+    @DisplayName("Test malformed geocaches")
+    public void testMalformedGeocache() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        final List<Waypoint> waypoints = new ArrayList<>();
+        final GpxBinder binder =
+                new GpxBinder(
+                        new PullParser(
+                                "<gpx><wpt lat=\"48.1\" lon=\"11.5\"><name>GC1234</name>"
+                                        + "<desc>Description</desc><groundspeak:cache>"
+                                        + "<groundspeak:difficulty>hard</groundspeak:difficulty>"
+                                        + "</groundspeak:cache></wpt></gpx>"),
+                        geocaches,
+                        waypoints);
+        final List<Exception> errors = binder.deferErrors();
+        binder.bind();
+
+        assertEquals(1, errors.size());
+        assertTrue(geocaches.isEmpty());
+        assertEquals(1, waypoints.size());
+        assertEquals("GC1234", waypoints.get(0).getCode());
+        assertEquals("Description", waypoints.get(0).getDescription());
+    }
+
+    /**
+     * Get a stream for the given string.
+     *
+     * @param data The data to provide.
+     * @return The corresponding stream.
+     */
+    private static InputStream toStream(final String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get a buffer for the given string.
+     *
+     * @param data The data to provide.
+     * @return The corresponding buffer.
+     */
+    private static ByteBuffer toBuffer(final String data) {
+        return ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+    }
+}
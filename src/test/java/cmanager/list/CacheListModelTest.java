@@ -0,0 +1,268 @@
+package cmanager.list;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+import cmanager.geo.Coordinate;
+import cmanager.geo.Geocache;
+import cmanager.geo.GeocacheLog;
+import cmanager.list.filter.FilterModel;
+import cmanager.util.CompressionProfile;
+import cmanager.util.ZipArchiveReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the cache list model. */
+public class CacheListModelTest {
+
+    /** The number of GPX files inside the saved archives. */
+    private static final int FILE_COUNT = 4;
+
+    /**
+     * Create a geocache with the given index.
+     *
+     * @param index The index of the geocache.
+     * @return The created geocache.
+     */
+    private static Geocache createGeocache(final int index) {
+        final Geocache geocache =
+                new Geocache(
+                        "GC" + Integer.toString(10000 + index, 36).toUpperCase(),
+                        "Geocache " + index,
+                        new Coordinate(index / 1000.0, index / 500.0),
+                        1.5,
+                        2.0,
+                        "Traditional Cache");
+        geocache.setDateHidden("2010-01-01T00:00:00Z");
+        geocache.setContainer("Small");
+        geocache.addLog(
+                new GeocacheLog("Found it", "Finder", "Log " + index, "2020-01-01T10:00:00Z"));
+        return geocache;
+    }
+
+    /**
+     * Read the compressed data of the GPX files inside the given archive.
+     *
+     * @param path The archive to read.
+     * @return The compressed data of each GPX file.
+     * @throws Exception Something went wrong when reading the data.
+     */
+    private static List<byte[]> readEntries(final Path path) throws Exception {
+        final List<byte[]> entries = new ArrayList<>();
+        try (ZipArchiveReader reader = new ZipArchiveReader(path)) {
+            for (int i = 1; i <= FILE_COUNT; i++) {
+                entries.add(reader.read("list-" + i + ".gpx").getCompressedData());
+            }
+        }
+        return entries;
+    }
+
+    /** Test that only the GPX files with changed geocaches are written again. */
+    @Test
+    @DisplayName("Test saving only changed parts of the list")
+    public void testIncrementalStore() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        for (int i = 0; i < 3500; i++) {
+            geocaches.add(createGeocache(i));
+        }
+        final CacheListModel model = new CacheListModel();
+        model.addCaches(geocaches);
+
+        final Path path = Files.createTempFile("cmanager-test", ".zip");
+        path.toFile().deleteOnExit();
+        model.store("list.zip", path.toString(), CompressionProfile.FAST);
+        final List<byte[]> initial = readEntries(path);
+
+        // Add a log to a geocache of the second file.
+        final Geocache update = createGeocache(1500);
+        update.addLog(
+                new GeocacheLog("Write note", "Owner", "Updated", "2021-01-01T10:00:00Z"));
+        model.addCaches(Collections.singletonList(update));
+        model.store("list.zip", path.toString(), CompressionProfile.FAST);
+        final List<byte[]> updated = readEntries(path);
+
+        assertArrayEquals(initial.get(0), updated.get(0));
+        assertFalse(Arrays.equals(initial.get(1), updated.get(1)));
+        assertArrayEquals(initial.get(2), updated.get(2));
+        assertArrayEquals(initial.get(3), updated.get(3));
+
+        // Removing a geocache moves the following ones into other files.
+        model.removeCaches(Collections.singletonList(geocaches.get(2500)));
+        model.store("list.zip", path.toString(), CompressionProfile.FAST);
+        final List<byte[]> removed = readEntries(path);
+
+        assertArrayEquals(updated.get(0), removed.get(0));
+        assertArrayEquals(updated.get(1), removed.get(1));
+        assertFalse(Arrays.equals(updated.get(2), removed.get(2)));
+        assertFalse(Arrays.equals(updated.get(3), removed.get(3)));
+
+        // The copied and the written files can be loaded again.
+        final CacheListModel loaded = new CacheListModel();
+        loaded.load(path.toString());
+        final List<Geocache> list = loaded.getList();
+        assertEquals(3499, list.size());
+        assertEquals(2, list.get(1500).getLogs().size());
+        assertEquals("Log 0", list.get(0).getLogs().get(0).getText());
+        assertEquals("Geocache 2501", list.get(2500).getName());
+
+        // Saving the opened list again copies the unchanged files.
+        final Geocache loadedUpdate = createGeocache(2501);
+        loadedUpdate.addLog(
+                new GeocacheLog("Write note", "Owner", "Loaded", "2021-01-01T10:00:00Z"));
+        loaded.addCaches(Collections.singletonList(loadedUpdate));
+        loaded.store("list.zip", path.toString(), CompressionProfile.FAST);
+        final List<byte[]> resaved = readEntries(path);
+
+        assertArrayEquals(removed.get(0), resaved.get(0));
+        assertArrayEquals(removed.get(1), resaved.get(1));
+        assertFalse(Arrays.equals(removed.get(2), resaved.get(2)));
+        assertArrayEquals(removed.get(3), resaved.get(3));
+
+        // Removing and restoring a geocache keeps the files before its position.
+        loaded.removeCaches(Collections.singletonList(loaded.get(1200)));
+        loaded.replayLastUndoAction();
+        loaded.replayLastUndoAction();
+        loaded.store("list.zip", path.toString(), CompressionProfile.FAST);
+        final List<byte[]> reverted = readEntries(path);
+
+        assertArrayEquals(resaved.get(0), reverted.get(0));
+        assertEquals(3499, loaded.size());
+    }
+
+    /** Test that merging updates the existing geocaches, also after removals and undo. */
+    @Test
+    @DisplayName("Test merging geocaches by code")
+    public void testMergeByCode() {
+        final List<Geocache> geocaches = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            geocaches.add(createGeocache(i));
+        }
+        final CacheListModel model = new CacheListModel();
+        model.addCaches(geocaches);
+
+        final List<Geocache> merged = new ArrayList<>();
+        for (int i = 90_000; i < 110_000; i++) {
+            merged.add(createGeocache(i));
+        }
+        assertTimeout(Duration.ofSeconds(5), () -> model.addCaches(merged));
+        assertEquals(110_000, model.size());
+        assertSame(geocaches.get(99_999), model.get(99_999));
+
+        // Removed geocaches are added again instead of being updated.
+        model.removeCaches(Collections.singletonList(geocaches.get(5)));
+        model.addCaches(Collections.singletonList(createGeocache(5)));
+        assertEquals(110_000, model.size());
+        assertNotSame(geocaches.get(5), model.get(109_999));
+        assertEquals(geocaches.get(5).getCode(), model.get(109_999).getCode());
+
+        // After undoing the removal, the original instance is updated again.
+        model.replayLastUndoAction();
+        model.replayLastUndoAction();
+        model.addCaches(Collections.singletonList(createGeocache(5)));
+        assertEquals(110_000, model.size());
+        assertSame(geocaches.get(5), model.get(5));
+    }
+
+    /** Test removing large parts of the list. */
+    @Test
+    @DisplayName("Test removing many geocaches")
+    public void testRemoveMany() {
+        final List<Geocache> geocaches = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            geocaches.add(createGeocache(i));
+        }
+        final CacheListModel model = new CacheListModel();
+        model.addCaches(geocaches);
+
+        final List<Geocache> removed = new ArrayList<>();
+        for (int i = 0; i < 100_000; i += 3) {
+            removed.add(geocaches.get(i));
+        }
+        assertTimeout(Duration.ofSeconds(5), () -> model.removeCaches(removed));
+        assertEquals(66_666, model.size());
+        assertSame(geocaches.get(1), model.get(0));
+        assertSame(geocaches.get(99_998), model.get(66_665));
+
+        // Keep the geocaches with an index ending in 1 or 5.
+        final FilterModel filter =
+                new FilterModel(CacheListFilterType.SINGLE_FILTER_VALUE) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean isGood(final Geocache geocache) {
+                        final String name = geocache.getName();
+                        return name.endsWith("1") || name.endsWith("5");
+                    }
+                };
+        model.addFilter(filter);
+        assertTimeout(Duration.ofSeconds(5), model::removeCachesNotInFilter);
+        model.removeFilter(filter);
+        assertEquals(13_334, model.size());
+        assertSame(geocaches.get(1), model.get(0));
+
+        // The latest actions are kept regardless of their size, so both removals can be undone.
+        assertEquals(3, model.getUndoActionCount());
+        model.replayLastUndoAction();
+        assertEquals(66_666, model.size());
+        for (int i = 0; i < 66_666; i += 999) {
+            assertSame(geocaches.get(i / 2 * 3 + i % 2 + 1), model.get(i));
+        }
+        model.replayLastUndoAction();
+        assertEquals(100_000, model.size());
+        for (int i = 0; i < 100_000; i += 999) {
+            assertSame(geocaches.get(i), model.get(i));
+        }
+    }
+
+    /** Test matching the waypoints of a separate file with the geocaches of a large list. */
+    @Test
+    @DisplayName("Test matching orphaned waypoints")
+    public void testMatchOrphans() throws Throwable {
+        final List<Geocache> geocaches = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            geocaches.add(createGeocache(i));
+        }
+        final CacheListModel model = new CacheListModel();
+        model.addCaches(geocaches);
+
+        // Waypoints with a parent, with a deduced parent and without a matching geocache.
+        final StringBuilder data = new StringBuilder("<?xml version=\"1.0\"?>\n<gpx>\n");
+        for (int i = 0; i < 60_000; i += 2) {
+            final String code = Integer.toString(10000 + i, 36).toUpperCase();
+            data.append("<wpt lat=\"1\" lon=\"2\"><name>PK").append(code).append("</name>");
+            data.append("<gsak:wptExtension><gsak:Parent>GC").append(code);
+            data.append("</gsak:Parent></gsak:wptExtension></wpt>\n");
+            data.append("<wpt lat=\"1\" lon=\"2\"><name>S1").append(code).append("</name></wpt>\n");
+        }
+        data.append("</gpx>\n");
+        final Path path = Files.createTempFile("cmanager-test", ".gpx");
+        path.toFile().deleteOnExit();
+        Files.write(path, data.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertTimeout(Duration.ofSeconds(10), () -> model.load(path.toString()));
+        assertEquals(2, geocaches.get(0).getWaypoints().size());
+        assertEquals(
+                geocaches.get(0).getCode(), geocaches.get(0).getWaypoints().get(1).getParent());
+        assertEquals(0, geocaches.get(1).getWaypoints().size());
+        assertEquals(2, geocaches.get(49_998).getWaypoints().size());
+        assertEquals(10_000, model.getOrphanCount());
+        assertEquals(10_000, model.getOrphans().size());
+
+        // Geocaches added later claim the remaining waypoints.
+        model.addCaches(Collections.singletonList(createGeocache(50_000)));
+        assertEquals(2, model.get(50_000).getWaypoints().size());
+        assertEquals(9_998, model.getOrphanCount());
+    }
+}
@@ -0,0 +1,73 @@
+package cmanager.list.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import cmanager.geo.Coordinate;
+import cmanager.geo.Geocache;
+import cmanager.list.CacheListFilterType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Test the evaluation of multiple filters. */
+public class FilterEvaluatorTest {
+
+    /**
+     * Create a filter failing for the geocaches with a name ending in the given character and
+     * accepting the other ones.
+     *
+     * @param ending The character to fail for.
+     * @param invert Whether to invert the filter.
+     * @return The created filter.
+     */
+    private static FilterModel createFailingFilter(final char ending, final boolean invert) {
+        return new FilterModel(CacheListFilterType.SINGLE_FILTER_VALUE) {
+            private static final long serialVersionUID = 1L;
+
+            {
+                inverted = invert;
+            }
+
+            @Override
+            protected boolean isGood(final Geocache geocache) {
+                final String name = geocache.getName();
+                if (name.charAt(name.length() - 1) == ending) {
+                    throw new IllegalStateException(name);
+                }
+                return !invert;
+            }
+        };
+    }
+
+    /** Test that geocaches failing a filter are rejected without affecting the other ones. */
+    @Test
+    @DisplayName("Test evaluating failing filters")
+    public void testFailingFilter() {
+        final List<Geocache> list = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            list.add(
+                    new Geocache("GC" + i, "Cache " + i, new Coordinate(0, 0), 0.0, 0.0, "Tradi"));
+        }
+
+        final List<Geocache> filtered =
+                FilterEvaluator.filter(
+                        list, Collections.singletonList(createFailingFilter('3', false)));
+        assertEquals(2_700, filtered.size());
+        assertSame(list.get(4), filtered.get(3));
+        assertSame(list.get(2_999), filtered.get(2_699));
+
+        // Failed checks reject the geocache for inverted filters as well.
+        assertEquals(
+                2_400,
+                FilterEvaluator.filter(
+                                list,
+                                Arrays.asList(
+                                        createFailingFilter('3', false),
+                                        createFailingFilter('7', true)))
+                        .size());
+    }
+}
@@ -2,12 +2,16 @@ package cmanager.list.filter;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import cmanager.geo.Coordinate;
 import cmanager.geo.Geocache;
+import cmanager.list.CacheListFilterType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -40,4 +44,100 @@ public class FilterModelTest {
         assertTrue(filtered.size() > 0);
         assertTrue(filtered.size() <= 3);
     }
+
+    /**
+     * Create a filter accepting the geocaches with a name ending in one of the given characters.
+     *
+     * @param endings The characters to accept.
+     * @param invert Whether to invert the filter.
+     * @param checks The counter to increment for each check.
+     * @return The created filter.
+     */
+    private static FilterModel createFilter(
+            final String endings, final boolean invert, final AtomicInteger checks) {
+        return new FilterModel(CacheListFilterType.SINGLE_FILTER_VALUE) {
+            private static final long serialVersionUID = 1L;
+
+            {
+                inverted = invert;
+            }
+
+            @Override
+            protected boolean isGood(final Geocache geocache) {
+                checks.incrementAndGet();
+                final String name = geocache.getName();
+                return endings.indexOf(name.charAt(name.length() - 1)) >= 0;
+            }
+        };
+    }
+
+    /** Test applying multiple filters in a single pass. */
+    @Test
+    @DisplayName("Test evaluating multiple filters")
+    public void testMultipleFilters() {
+        final List<Geocache> list = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            list.add(
+                    new Geocache("GC" + i, "Cache " + i, new Coordinate(0, 0), 0.0, 0.0, "Tradi"));
+        }
+
+        // The first filter rejects few geocaches, the second one most of them. Filters without
+        // measurements are checked in the given order.
+        final AtomicInteger broadChecks = new AtomicInteger();
+        final AtomicInteger narrowChecks = new AtomicInteger();
+        final FilterModel broad = createFilter("012345678", false, broadChecks);
+        final FilterModel narrow = createFilter("37", false, narrowChecks);
+        final List<FilterModel> filters = Arrays.asList(broad, narrow);
+
+        final List<Geocache> filtered = FilterEvaluator.filter(list, filters);
+        assertEquals(2_000, filtered.size());
+        assertSame(list.get(3), filtered.get(0));
+        assertSame(list.get(9_997), filtered.get(1_999));
+        assertEquals(10_000, broadChecks.get());
+        assertEquals(9_000, narrowChecks.get());
+
+        // With the given statistics, the more selective filter is checked first.
+        broad.updateStatistics(10_000, 1_000, 100, 100 * 50);
+        narrow.updateStatistics(10_000, 8_000, 100, 100 * 50);
+        broadChecks.set(0);
+        narrowChecks.set(0);
+        assertEquals(filtered, FilterEvaluator.filter(list, filters));
+        assertEquals(10_000, narrowChecks.get());
+        assertEquals(2_000, broadChecks.get());
+
+        // Inverted filters are taken into account.
+        final FilterModel inverted = createFilter("37", true, new AtomicInteger());
+        assertEquals(7_000, FilterEvaluator.filter(list, Arrays.asList(broad, inverted)).size());
+    }
+
+    /** Test ranking the filters by their measured cost and rejection rate. */
+    @Test
+    @DisplayName("Test ranking filters")
+    public void testRank() {
+        final FilterModel filter = createFilter("0", false, new AtomicInteger());
+        assertEquals(0, filter.getRank());
+
+        // 50 ns per check and 10 % rejections.
+        filter.updateStatistics(1_000, 100, 100, 100 * 50);
+        assertEquals(500, filter.getRank(), 1e-9);
+
+        // Evaluations not reaching the filter keep the statistics.
+        filter.updateStatistics(0, 0, 0, 0);
+        assertEquals(500, filter.getRank(), 1e-9);
+
+        // Without timed checks, only the rejection rate is updated.
+        filter.updateStatistics(1_000, 500, 0, 0);
+        assertEquals(100, filter.getRank(), 1e-9);
+
+        // Filters without rejections are checked last.
+        filter.updateStatistics(1_000, 0, 100, 100 * 50);
+        assertEquals(Double.MAX_VALUE, filter.getRank());
+
+        // Cheap filters are preferred over more selective, but expensive ones.
+        final FilterModel expensive = createFilter("0", false, new AtomicInteger());
+        expensive.updateStatistics(1_000, 900, 100, 100 * 10_000);
+        final FilterModel cheap = createFilter("0", false, new AtomicInteger());
+        cheap.updateStatistics(1_000, 300, 100, 100 * 20);
+        assertTrue(cheap.getRank() < expensive.getRank());
+    }
 }
@@ -0,0 +1,201 @@
+package cmanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cmanager.xml.PullParser;
+import cmanager.xml.XmlEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the file handling utilities. */
+public class FileHelperTest {
+
+    /**
+     * Write a ZIP file with the given entries.
+     *
+     * @param entries The content of the entries. The entries are named by their index.
+     * @return The path to the ZIP file.
+     * @throws IOException Something went wrong when writing the file.
+     */
+    private static Path createZipFile(final List<String> entries) throws IOException {
+        final Path path = Files.createTempFile("cmanager-test", ".zip");
+        path.toFile().deleteOnExit();
+
+        try (OutputStream outputStream = Files.newOutputStream(path);
+                ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            for (int i = 0; i < entries.size(); i++) {
+                zipOutputStream.putNextEntry(new ZipEntry(i + ".gpx"));
+                zipOutputStream.write(entries.get(i).getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Create the data of a ZIP file with the given entries.
+     *
+     * @param names The names of the entries.
+     * @param entries The content of the entries.
+     * @return The data of the ZIP file.
+     * @throws IOException Something went wrong when writing the data.
+     */
+    private static byte[] createZipData(final List<String> names, final List<byte[]> entries)
+            throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            for (int i = 0; i < entries.size(); i++) {
+                zipOutputStream.putNextEntry(new ZipEntry(names.get(i)));
+                zipOutputStream.write(entries.get(i));
+                zipOutputStream.closeEntry();
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Create a minimal GPX document with a single waypoint of the given name.
+     *
+     * @param name The name of the waypoint.
+     * @return The encoded document.
+     */
+    private static byte[] createGpx(final String name) {
+        return ("<?xml version=\"1.0\"?>\n<gpx><wpt><name>" + name + "</name></wpt></gpx>\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the given stream as a string.
+     *
+     * @param inputStream The stream to read.
+     * @return The content of the stream.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private static String read(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Test that the entries of a ZIP file are merged in the order of the archive. */
+    @Test
+    @DisplayName("Test processing ZIP entries in order")
+    public void testZipEntryOrder() throws Throwable {
+        final List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final StringBuilder entry = new StringBuilder();
+            for (int j = 0; j < (50 - i) * 100; j++) {
+                entry.append(i).append('\n');
+            }
+            entries.add(entry.toString());
+        }
+        final Path path = createZipFile(entries);
+
+        final List<String> merged = new ArrayList<>();
+        FileHelper.processFiles(
+                path.toString(),
+                new FileHelper.ParsingInputAction<String>() {
+                    @Override
+                    public String parse(InputStream inputStream) throws IOException {
+                        return read(inputStream);
+                    }
+
+                    @Override
+                    public void merge(String result) {
+                        merged.add(result);
+                    }
+                });
+
+        assertEquals(entries, merged);
+    }
+
+    /** Test that parsing errors are reported. */
+    @Test
+    @DisplayName("Test errors when processing ZIP entries")
+    public void testZipEntryError() throws Throwable {
+        final List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entries.add(i == 7 ? "invalid" : "valid");
+        }
+        final Path path = createZipFile(entries);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        FileHelper.processFiles(
+                                path.toString(),
+                                new FileHelper.ParsingInputAction<String>() {
+                                    @Override
+                                    public String parse(InputStream inputStream)
+                                            throws IOException {
+                                        final String result = read(inputStream);
+                                        if (result.equals("invalid")) {
+                                            throw new IllegalArgumentException(result);
+                                        }
+                                        return result;
+                                    }
+
+                                    @Override
+                                    public void merge(String result) {}
+                                }));
+    }
+
+    /** Test that parsing the entries of a nested archive does not close the enclosing stream. */
+    @Test
+    @DisplayName("Test processing nested ZIP files")
+    public void testNestedZipFile() throws Throwable {
+        final byte[] nested =
+                createZipData(
+                        Arrays.asList("a.gpx", "b.gpx", "c.gpx"),
+                        Arrays.asList(createGpx("A"), createGpx("B"), createGpx("C")));
+        final Path path = Files.createTempFile("cmanager-test", ".zip");
+        path.toFile().deleteOnExit();
+        Files.write(
+                path,
+                createZipData(
+                        Arrays.asList("first.gpx", "nested.zip", "last.gpx"),
+                        Arrays.asList(createGpx("First"), nested, createGpx("Last"))));
+
+        final List<String> merged = new ArrayList<>();
+        FileHelper.processFiles(
+                path.toString(),
+                new FileHelper.ParsingInputAction<String>() {
+                    @Override
+                    public String parse(InputStream inputStream) throws Exception {
+                        final PullParser parser = new PullParser(inputStream);
+                        String name = null;
+                        while (parser.next() != XmlEvent.END_DOCUMENT) {
+                            if (parser.getEvent() == XmlEvent.START_ELEMENT
+                                    && parser.getName().equals("name")) {
+                                name = parser.nextText();
+                            }
+                        }
+                        return name;
+                    }
+
+                    @Override
+                    public void merge(String result) {
+                        merged.add(result);
+                    }
+                });
+
+        assertEquals(Arrays.asList("First", "A", "B", "C", "Last"), merged);
+    }
+}
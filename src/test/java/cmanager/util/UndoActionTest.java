@@ -0,0 +1,108 @@
+package cmanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cmanager.geo.Coordinate;
+import cmanager.geo.Geocache;
+import cmanager.geo.GeocacheLog;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the undo actions. */
+public class UndoActionTest {
+
+    /**
+     * Create a list with the given number of geocaches.
+     *
+     * @param count The number of geocaches.
+     * @return The created list.
+     */
+    private static List<Geocache> createList(final int count) {
+        final List<Geocache> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new Geocache("GC" + i, "Cache " + i, new Coordinate(0, 0), 1.0, 1.0, "Tradi"));
+        }
+        return list;
+    }
+
+    /**
+     * Check that both lists contain the same instances in the same order.
+     *
+     * @param expected The expected list.
+     * @param actual The actual list.
+     */
+    private static void assertSameElements(
+            final List<Geocache> expected, final List<Geocache> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    /** Test reverting removals, also with geocaches appended afterwards. */
+    @Test
+    @DisplayName("Test reverting removals")
+    public void testRemoval() {
+        final List<Geocache> original = createList(1000);
+        final List<Geocache> list = new ArrayList<>(original);
+
+        final UndoAction action =
+                UndoAction.removeIf(
+                        list,
+                        geocache ->
+                                geocache.getCode().endsWith("7")
+                                        || geocache.getCode().equals("GC0"));
+        assertEquals(899, list.size());
+        assertSame(original.get(1), list.get(0));
+        assertSame(original.get(999), list.get(898));
+        assertEquals(0, action.getFirstIndex());
+
+        final Geocache appended = createList(1).get(0);
+        list.add(appended);
+        final List<Geocache> reverted = action.revert(list);
+        assertSame(appended, reverted.remove(1000));
+        assertSameElements(original, reverted);
+        assertEquals(48 + 101 * (12 + UndoAction.estimateSize(original.get(0))), action.getSize());
+    }
+
+    /** Test reverting additions. */
+    @Test
+    @DisplayName("Test reverting additions")
+    public void testAddition() {
+        final List<Geocache> original = createList(10);
+        final List<Geocache> list = new ArrayList<>(original);
+        list.addAll(createList(5));
+
+        final UndoAction action = UndoAction.added(10, 5);
+        assertEquals(10, action.getFirstIndex());
+        assertEquals(Integer.MAX_VALUE, UndoAction.added(10, 0).getFirstIndex());
+        assertSameElements(original, action.revert(list));
+        assertSameElements(original, UndoAction.added(10, 0).revert(list));
+    }
+
+    /** Test that the size of removals includes the content of the removed geocaches. */
+    @Test
+    @DisplayName("Test estimating the size")
+    public void testSize() {
+        final List<Geocache> list = createList(2);
+        final Geocache large = list.get(1);
+        final StringBuilder listing = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            listing.append("Listing ");
+        }
+        large.setListing(listing.toString());
+        large.addLog(new GeocacheLog("Found it", "Finder", "TFTC", "2020-01-01T10:00:00Z"));
+
+        final long smallSize = UndoAction.estimateSize(list.get(0));
+        final long largeSize = UndoAction.estimateSize(large);
+        assertTrue(largeSize > smallSize + 2 * 80_000);
+
+        final UndoAction action = UndoAction.removeIf(list, geocache -> true);
+        assertEquals(48 + 2 * 12 + smallSize + largeSize, action.getSize());
+        assertEquals(48, UndoAction.added(0, 2).getSize());
+    }
+}
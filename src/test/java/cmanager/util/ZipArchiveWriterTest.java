@@ -0,0 +1,96 @@
+package cmanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for writing ZIP files from compressed entries. */
+public class ZipArchiveWriterTest {
+
+    /**
+     * Read the given stream as a string.
+     *
+     * @param inputStream The stream to read.
+     * @return The content of the stream.
+     * @throws IOException Something went wrong when reading the data.
+     */
+    private static String read(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Test that the written archives can be read with all compression profiles. */
+    @Test
+    @DisplayName("Test writing ZIP files")
+    public void testWrite() throws Exception {
+        final List<String> names = new ArrayList<>();
+        final List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            names.add("list-ä-" + i + ".gpx");
+            final StringBuilder content = new StringBuilder();
+            for (int j = 0; j < i * 10000; j++) {
+                content.append("<name>GC").append(j).append("</name>\n");
+            }
+            contents.add(content.toString());
+        }
+
+        for (final CompressionProfile profile : CompressionProfile.values()) {
+            final Path path = Files.createTempFile("cmanager-test", ".zip");
+            path.toFile().deleteOnExit();
+
+            try (ZipArchiveWriter writer =
+                    new ZipArchiveWriter(FileHelper.openFileWrite(path.toString()))) {
+                for (int i = 0; i < names.size(); i++) {
+                    final byte[] content = contents.get(i).getBytes(StandardCharsets.UTF_8);
+                    writer.write(
+                            ZipArchiveWriter.compress(
+                                    names.get(i),
+                                    profile,
+                                    outputStream -> outputStream.write(content)));
+                }
+            }
+
+            // The central directory.
+            try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                for (int i = 0; i < names.size(); i++) {
+                    final ZipEntry entry = entries.nextElement();
+                    assertEquals(names.get(i), entry.getName());
+                    assertEquals(
+                            profile.isStored() ? ZipEntry.STORED : ZipEntry.DEFLATED,
+                            entry.getMethod());
+                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                        assertEquals(contents.get(i), read(inputStream));
+                    }
+                }
+            }
+
+            // The local headers.
+            try (ZipInputStream zipInputStream =
+                    new ZipInputStream(Files.newInputStream(path))) {
+                for (int i = 0; i < names.size(); i++) {
+                    assertEquals(names.get(i), zipInputStream.getNextEntry().getName());
+                    assertEquals(contents.get(i), read(zipInputStream));
+                }
+            }
+        }
+    }
+}
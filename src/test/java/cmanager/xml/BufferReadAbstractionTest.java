@@ -0,0 +1,120 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the buffered reading abstraction. */
+public class BufferReadAbstractionTest {
+
+    /**
+     * Create a buffer for the given string which is read from a stream.
+     *
+     * @param string The data to read.
+     * @return The buffer reading the given data.
+     */
+    private static BufferReadAbstraction fromStream(final String string) {
+        return new CharWindowReadAbstraction(
+                new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Test that peeking does not consume anything.
+     *
+     * @throws IOException Something went wrong when reading the data.
+     */
+    @Test
+    @DisplayName("Test peeking and consuming")
+    public void testPeekAndConsume() throws IOException {
+        final BufferReadAbstraction buffer = new CharWindowReadAbstraction("<name>Täst</name>");
+
+        assertEquals('<', buffer.charAt(0));
+        assertEquals('n', buffer.charAt(1));
+        assertEquals("name", buffer.substring(1, 5));
+        assertEquals(5, buffer.indexOf(">"));
+
+        buffer.deleteUntil(6);
+        assertEquals("Täst", buffer.substring(0, buffer.indexOf("<")));
+        assertEquals(-1, buffer.indexOf("<?"));
+
+        buffer.deleteChar();
+        assertEquals("äst</name>", buffer.toStringBuilder().toString());
+        assertFalse(buffer.available());
+    }
+
+    /**
+     * Test reading data which is larger than the initial window.
+     *
+     * @throws IOException Something went wrong when reading the data.
+     */
+    @Test
+    @DisplayName("Test reading across window refills")
+    public void testWindowRefill() throws IOException {
+        final StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            data.append("<a>").append(i).append("</a>\n");
+        }
+        final BufferReadAbstraction buffer = fromStream(data.toString());
+
+        int count = 0;
+        while (buffer.available()) {
+            assertEquals("<a>", buffer.substring(0, 3));
+            final int end = buffer.indexOf("</a>");
+            assertEquals(String.valueOf(count), buffer.substring(3, end));
+            buffer.deleteUntil(end + 5);
+            count++;
+        }
+        assertEquals(100000, count);
+    }
+
+    /**
+     * Test accessing data after the end of the buffer.
+     *
+     * @throws IOException Something went wrong when reading the data.
+     */
+    @Test
+    @DisplayName("Test reading after the end of the data")
+    public void testEndOfData() throws IOException {
+        final BufferReadAbstraction buffer = fromStream("<a/>");
+
+        assertTrue(buffer.available());
+        assertEquals("<a/>", buffer.substring(0, 5));
+        assertThrows(EOFException.class, () -> buffer.charAt(4));
+    }
+
+    /**
+     * Test reading UTF-8 encoded bytes.
+     *
+     * @throws IOException Something went wrong when reading the data.
+     */
+    @Test
+    @DisplayName("Test reading UTF-8 encoded bytes")
+    public void testUtf8Buffer() throws IOException {
+        final byte[] data = "\uFEFF<näme a='Täst'>x</näme>".getBytes(StandardCharsets.UTF_8);
+        final BufferReadAbstraction buffer = new Utf8BufferReadAbstraction(ByteBuffer.wrap(data));
+
+        // The byte order mark is skipped and the indices refer to bytes.
+        assertEquals('<', buffer.charAt(0));
+        assertEquals(6, buffer.indexOf(" "));
+        assertEquals("näme", buffer.substring(1, 6));
+        assertEquals(8, buffer.regionMatches(0, "<näme a"));
+        assertEquals(-1, buffer.regionMatches(0, "<name"));
+
+        buffer.deleteUntil(10);
+        final CharSequence value = buffer.token(0, buffer.indexOf("'"));
+        buffer.deleteUntil(buffer.indexOf("<"));
+        assertEquals("Täst", value.toString());
+        assertEquals("</näme>", buffer.toStringBuilder().toString());
+        assertFalse(buffer.available());
+        assertThrows(EOFException.class, () -> buffer.charAt(0));
+    }
+}
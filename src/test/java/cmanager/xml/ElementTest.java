@@ -0,0 +1,62 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the XML element. */
+public class ElementTest {
+
+    /** Test adding and removing children. */
+    @Test
+    @DisplayName("Test the children")
+    public void testChildren() {
+        final Element element = new Element("logs");
+        assertEquals(0, element.getChildren().size());
+
+        for (int i = 0; i < 10; i++) {
+            element.add(new Element(i % 2 == 0 ? "log" : "other", Integer.valueOf(i)));
+        }
+        final List<Element> children = element.getChildren();
+        assertEquals(10, element.getChildCount());
+        assertEquals("9", children.get(9).getUnescapedBody());
+        assertEquals(5, element.getChildren("log").size());
+        assertSame(children.get(1), element.getChild("other"));
+        assertThrows(UnsupportedOperationException.class, () -> children.add(new Element()));
+        assertThrows(IndexOutOfBoundsException.class, () -> children.get(10));
+
+        element.removeChildren(child -> child.is("other"));
+        assertEquals(5, element.getChildCount());
+        assertEquals(5, children.size());
+        assertEquals("8", children.get(4).getUnescapedBody());
+    }
+
+    /** Test adding and reading attributes. */
+    @Test
+    @DisplayName("Test the attributes")
+    public void testAttributes() {
+        final Element element = new Element("wpt");
+        assertEquals(0, element.getAttributes().size());
+
+        element.add(new XmlAttribute("lat", 1.5));
+        element.addAttribute("lon", "2.5");
+        element.add(new XmlAttribute("premium", true));
+        element.addAttribute("missing", null);
+        element.addAttribute("id", "5");
+
+        assertEquals(5, element.getAttributeCount());
+        assertEquals("lon", element.getAttributeName(1));
+        assertEquals("True", element.getAttributeValue(2));
+        assertEquals("1.5", element.getAttributes().get(0).getValue());
+        assertEquals("id", element.getAttributes().get(4).getName());
+        assertTrue(element.attrIs("lon", "2.5"));
+        assertTrue(element.attrIs("missing", null));
+        assertFalse(element.attrIs("lat", "2.5"));
+    }
+}
@@ -0,0 +1,290 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the XML parser. */
+public class ParserTest {
+
+    /**
+     * Create a string consisting of the given character.
+     *
+     * @param character The character to repeat.
+     * @param length The length of the string.
+     * @return The created string.
+     */
+    private static String repeat(final char character, final int length) {
+        final char[] characters = new char[length];
+        Arrays.fill(characters, character);
+        return new String(characters);
+    }
+
+    /** Test parsing a simple element. */
+    @Test
+    @DisplayName("Test parsing a simple element")
+    public void testParseString() throws Exception {
+        final Element root =
+                Parser.parse(
+                        "<?xml version=\"1.0\"?>\n"
+                                + "<gpx version='1.0'>\n"
+                                + "  <name>Tom &amp; Jerry</name>\n"
+                                + "  <bounds minlat=\"1.5\" />\n"
+                                + "</gpx>\n");
+
+        final Element gpx = root.getChild("gpx");
+        assertEquals("1.0", gpx.getAttributes().get(0).getValue());
+        assertEquals("Tom & Jerry", gpx.getChild("name").getUnescapedBody());
+        assertEquals("1.5", gpx.getChild("bounds").getAttributes().get(0).getValue());
+    }
+
+    /** Test that parsed bodies are written without decoding them, if possible. */
+    @Test
+    @DisplayName("Test writing raw bodies")
+    public void testRawBodies() throws Throwable {
+        final Element root =
+                Parser.parse(
+                        "<gpx>\n"
+                                + "  <name>Tom &amp; Jerry's &#228; &lt;3 &gt;</name>\n"
+                                + "  <desc>Tom & Jerry</desc>\n"
+                                + "  <author>&nbsp;</author>\n"
+                                + "</gpx>\n");
+        final Element gpx = root.getChild("gpx");
+        final Element name = gpx.getChild("name");
+        assertEquals("Tom & Jerry's \u00e4 <3 >", name.getUnescapedBody());
+        assertSame(name.getUnescapedBody(), name.getUnescapedBody());
+
+        // Modified bodies are escaped again.
+        gpx.add(new Element("time", "<now>"));
+
+        assertEquals(
+                "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+                        + "<gpx>\n"
+                        + "  <name>Tom &amp; Jerry's &#228; &lt;3 &gt;</name>\n"
+                        + "  <desc>Tom &amp; Jerry</desc>\n"
+                        + "  <author>&amp;nbsp;</author>\n"
+                        + "  <time>&lt;now&gt;</time>\n"
+                        + "</gpx>\n",
+                serialize(root));
+    }
+
+    /**
+     * Regression benchmark for element bodies with multiple megabytes.
+     *
+     * <p>The bodies are larger than the window of the reader, and the last one is larger than the
+     * former hard limit of 10 MB.
+     */
+    @Test
+    @DisplayName("Test parsing elements with large bodies")
+    public void testLargeBodies() {
+        final int[] sizes = {2 * 1024 * 1024, 4 * 1024 * 1024, 11 * 1024 * 1024};
+
+        final StringBuilder xml = new StringBuilder("<gpx>\n");
+        for (int i = 0; i < sizes.length; i++) {
+            xml.append("<groundspeak:long_description html=\"True\">")
+                    .append(repeat((char) ('a' + i), sizes[i]))
+                    .append("</groundspeak:long_description>\n");
+        }
+        xml.append("</gpx>\n");
+        final byte[] data = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+        final Element root =
+                assertTimeout(
+                        Duration.ofSeconds(10),
+                        () -> Parser.parse(new ByteArrayInputStream(data), null));
+
+        final Element gpx = root.getChild("gpx");
+        assertEquals(sizes.length, gpx.getChildren().size());
+        for (int i = 0; i < sizes.length; i++) {
+            final String body = gpx.getChildren().get(i).getUnescapedBody();
+            assertEquals(sizes[i], body.length());
+            assertEquals((char) ('a' + i), body.charAt(sizes[i] - 1));
+        }
+    }
+
+    /**
+     * Create a tree similar to a GPX file with the given number of geocaches.
+     *
+     * @param count The number of geocaches.
+     * @return The root of the created tree.
+     */
+    private static Element createGeocacheTree(final int count) {
+        final Element gpx = new Element("gpx");
+        gpx.add(new XmlAttribute("version", "1.0"));
+        gpx.add(new Element("name", "Test"));
+        for (int i = 0; i < count; i++) {
+            final Element waypoint = new Element("wpt");
+            waypoint.add(new XmlAttribute("lat", 48.0 + i / 1000.0));
+            waypoint.add(new XmlAttribute("lon", 11.0));
+            waypoint.add(new Element("name", "GC" + i));
+            waypoint.add(new Element("sym", (String) null));
+
+            final Element cache = new Element("groundspeak:cache");
+            cache.add(new XmlAttribute("id", i));
+            cache.add(new Element("groundspeak:name", "Tom & Jerry " + i));
+            cache.add(new Element("groundspeak:difficulty", 1.5));
+            cache.add(new Element("groundspeak:long_description", repeat('x', 2000) + " <b>"));
+
+            final Element logs = new Element("groundspeak:logs");
+            for (int j = 0; j < 5; j++) {
+                final Element log = new Element("groundspeak:log");
+                log.add(new Element("groundspeak:finder", "Finder " + j));
+                log.add(new Element("groundspeak:text", repeat('y', 300)));
+                logs.add(log);
+            }
+            cache.add(logs);
+            waypoint.add(cache);
+            gpx.add(waypoint);
+        }
+
+        final Element root = new Element();
+        root.add(gpx);
+        return root;
+    }
+
+    /**
+     * Serialize the given tree.
+     *
+     * @param root The tree to serialize.
+     * @return The serialized tree.
+     * @throws Throwable Something went wrong with the conversion.
+     */
+    private static String serialize(final Element root) throws Throwable {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Parser.xmlToBuffer(root, outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Test that a serialized tree yields the same elements when parsing it again. */
+    @Test
+    @DisplayName("Test serializing a large tree")
+    public void testSerializeLargeTree() throws Throwable {
+        final String actual = serialize(createGeocacheTree(1234));
+
+        final Element gpx = Parser.parse(actual).getChild("gpx");
+        assertEquals(1235, gpx.getChildren().size());
+        assertEquals("GC1233", gpx.getChildren().get(1234).getChild("name").getUnescapedBody());
+    }
+
+    /** Test removing the empty elements of a large tree. */
+    @Test
+    @DisplayName("Test shrinking a large tree")
+    public void testShrinkLargeTree() throws Throwable {
+        final Element gpx = new Element("gpx");
+        for (int i = 0; i < 5000; i++) {
+            final Element waypoint = new Element("wpt");
+            final Element logs = new Element("logs");
+            logs.add(new Element("log"));
+            waypoint.add(logs);
+            if (i % 3 == 0) {
+                waypoint.add(new Element("name", "GC" + i));
+            }
+            gpx.add(waypoint);
+        }
+        final Element root = new Element();
+        root.add(gpx);
+
+        final Element result = Parser.parse(serialize(root)).getChild("gpx");
+        assertEquals(1667, result.getChildCount());
+        for (final Element waypoint : result.getChildren()) {
+            assertEquals(1, waypoint.getChildCount());
+        }
+        assertEquals("GC4998", result.getChildren().get(1666).getChild("name").getUnescapedBody());
+    }
+
+    /** Benchmark for serializing a chunk of 1000 geocaches, as written by the GPX export. */
+    @Test
+    @DisplayName("Test serializing 1000 geocaches")
+    public void testSerializationThroughput() throws Throwable {
+        final Element root = createGeocacheTree(1000);
+
+        final String result = assertTimeout(Duration.ofSeconds(10), () -> serialize(root));
+        assertEquals(
+                "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n<gpx version=\"1.0\">",
+                result.substring(0, result.indexOf('\n', 60)));
+    }
+
+    /** Test that deep nesting and long lists of empty elements do not exhaust the stack. */
+    @Test
+    @DisplayName("Test parsing deep and wide documents")
+    public void testDeepAndWide() throws Exception {
+        final int count = 200_000;
+        final StringBuilder document = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            document.append("<n>");
+        }
+        document.append("<attributes>");
+        for (int i = 0; i < count; i++) {
+            document.append("<attribute id=\"").append(i).append("\"/>");
+        }
+        document.append("</attributes>");
+        for (int i = 0; i < count; i++) {
+            document.append("</n>");
+        }
+
+        Element element = Parser.parse(document.toString());
+        for (int i = 0; i < count; i++) {
+            element = element.getChild("n");
+        }
+        final List<Element> attributes = element.getChild("attributes").getChildren();
+        assertEquals(count, attributes.size());
+        assertEquals("0", attributes.get(0).getAttributeValue(0));
+        assertEquals("123456", attributes.get(123456).getAttributeValue(0));
+    }
+
+    /** Test that the callback receives the elements in the order in which they are closed. */
+    @Test
+    @DisplayName("Test the parser callback")
+    public void testCallback() throws Exception {
+        final List<String> located = new ArrayList<>();
+        final XmlParserCallbackInterface callback =
+                new XmlParserCallbackInterface() {
+                    @Override
+                    public boolean elementLocatedCorrectly(
+                            final Element element, final Element parent) {
+                        located.add(element.getName() + "@" + parent.getName());
+                        return true;
+                    }
+
+                    @Override
+                    public boolean elementFinished(final Element element) {
+                        return element.is("wpt");
+                    }
+                };
+
+        final String document =
+                "<?xml version=\"1.0\"?>\n<gpx><bounds /><wpt><name>A</name></wpt>"
+                        + "<wpt><name>B</name></wpt><time>now</time><extra/></gpx>";
+        final Element root =
+                Parser.parse(
+                        new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)),
+                        callback);
+
+        assertEquals(
+                Arrays.asList(
+                        "bounds@gpx",
+                        "name@wpt",
+                        "wpt@gpx",
+                        "name@wpt",
+                        "wpt@gpx",
+                        "time@gpx",
+                        "extra@gpx",
+                        "gpx@null"),
+                located);
+        final List<Element> children = root.getChild("gpx").getChildren();
+        assertEquals(3, children.size());
+        assertEquals("bounds", children.get(0).getName());
+        assertEquals("time", children.get(1).getName());
+        assertEquals("extra", children.get(2).getName());
+    }
+}
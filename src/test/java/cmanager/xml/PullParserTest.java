@@ -0,0 +1,261 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cmanager.exception.MalFormedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the XML pull parser. */
+public class PullParserTest {
+
+    /** Test the sequence of events for a small document. */
+    @Test
+    @DisplayName("Test the event sequence")
+    public void testEvents() throws Exception {
+        final PullParser parser =
+                new PullParser(
+                        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                                + "<!-- Some comment -->\n"
+                                + "<wpt lat=\"48.1\" lon = '11.5'>\n"
+                                + "  <name>GC1234</name>\n"
+                                + "  <sym/>\n"
+                                + "  <desc>Tom &amp; Jerry</desc>\n"
+                                + "</wpt>\n");
+
+        assertEquals(XmlEvent.START_ELEMENT, parser.next());
+        assertEquals("wpt", parser.getName());
+        assertEquals(1, parser.getDepth());
+        assertFalse(parser.isEmptyElement());
+        assertEquals(2, parser.getAttributeCount());
+        assertEquals("lon", parser.getAttributeName(1));
+        assertEquals("11.5", parser.getAttributeValue("lon"));
+
+        assertEquals(XmlEvent.START_ELEMENT, parser.next());
+        assertEquals("name", parser.getName());
+        assertEquals(XmlEvent.TEXT, parser.next());
+        assertEquals("GC1234", parser.getText());
+        assertEquals(XmlEvent.END_ELEMENT, parser.next());
+        assertEquals("name", parser.getName());
+
+        assertEquals(XmlEvent.START_ELEMENT, parser.next());
+        assertTrue(parser.isEmptyElement());
+        assertEquals(XmlEvent.END_ELEMENT, parser.next());
+        assertEquals("sym", parser.getName());
+
+        assertEquals(XmlEvent.START_ELEMENT, parser.next());
+        assertEquals(XmlEvent.TEXT, parser.next());
+        assertEquals("Tom &amp; Jerry", parser.getRawText());
+        assertEquals("Tom & Jerry", parser.getText());
+        assertEquals(XmlEvent.END_ELEMENT, parser.next());
+
+        assertEquals(XmlEvent.END_ELEMENT, parser.next());
+        assertEquals("wpt", parser.getName());
+        assertEquals(0, parser.getDepth());
+        assertEquals(XmlEvent.END_DOCUMENT, parser.next());
+    }
+
+    /** Test reading the text of elements directly. */
+    @Test
+    @DisplayName("Test reading the element text")
+    public void testNextText() throws Exception {
+        final PullParser parser =
+                new PullParser("<a><b>x &lt; y</b><c></c><d /><e>1<f>2</f>3</e></a>");
+
+        parser.next();
+        parser.next();
+        assertEquals("x < y", parser.nextText());
+        assertEquals(XmlEvent.END_ELEMENT, parser.getEvent());
+        parser.next();
+        assertEquals("", parser.nextText());
+        parser.next();
+        assertNull(parser.nextText());
+        parser.next();
+        assertEquals("3", parser.nextText());
+        assertEquals("e", parser.getName());
+        assertEquals(XmlEvent.END_ELEMENT, parser.next());
+        assertEquals(XmlEvent.END_DOCUMENT, parser.next());
+    }
+
+    /** Test that parsing the raw bytes yields the same events as parsing the characters. */
+    @Test
+    @DisplayName("Test parsing UTF-8 encoded bytes")
+    public void testByteBuffer() throws Exception {
+        final String document =
+                "<?xml version=\"1.0\"?>\n<gpx><wpt lat=\"1\"><näme>Fähre &amp; Maß</näme>"
+                        + "<c/></wpt></gpx>";
+        final PullParser expected = new PullParser(document);
+        final PullParser actual =
+                new PullParser(ByteBuffer.wrap(document.getBytes(StandardCharsets.UTF_8)));
+
+        XmlEvent event;
+        do {
+            event = expected.next();
+            assertEquals(event, actual.next());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getDepth(), actual.getDepth());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getAttributeCount(), actual.getAttributeCount());
+            for (int i = 0; i < expected.getAttributeCount(); i++) {
+                assertEquals(expected.getAttributeValue(i), actual.getAttributeValue(i));
+            }
+        } while (event != XmlEvent.END_DOCUMENT);
+    }
+
+    /** Test skipping complete elements. */
+    @Test
+    @DisplayName("Test skipping elements")
+    public void testSkipElement() throws Exception {
+        final PullParser parser = new PullParser("<a><b><b>x</b><c/></b><d>y</d></a>");
+
+        parser.next();
+        parser.next();
+        parser.skipElement();
+        assertEquals(XmlEvent.END_ELEMENT, parser.getEvent());
+        assertEquals("b", parser.getName());
+        assertEquals(1, parser.getDepth());
+        assertEquals(XmlEvent.START_ELEMENT, parser.next());
+        assertEquals("d", parser.getName());
+        assertEquals("y", parser.nextText());
+    }
+
+    /** Test skipping elements with markup characters inside attributes, comments and bodies. */
+    @Test
+    @DisplayName("Test skipping elements without reading them")
+    public void testSkipMarkup() throws Exception {
+        final String document =
+                "<a><logs><log id=\"1>2\" x='</logs>'><!-- </logs> --><t>&lt;b&gt;</t></log>"
+                        + "<log/><?pi </logs> ?></logs><e/><f>z</f></a>";
+        for (final PullParser parser :
+                new PullParser[] {
+                    new PullParser(document),
+                    new PullParser(ByteBuffer.wrap(document.getBytes(StandardCharsets.UTF_8)))
+                }) {
+            parser.next();
+            parser.next();
+            parser.skipElement();
+            assertEquals(XmlEvent.END_ELEMENT, parser.getEvent());
+            assertEquals("logs", parser.getName());
+            assertEquals(XmlEvent.START_ELEMENT, parser.next());
+            parser.skipElement();
+            assertEquals("e", parser.getName());
+            assertEquals(1, parser.getDepth());
+            parser.next();
+            assertEquals("z", parser.nextText());
+        }
+
+        final PullParser parser = new PullParser("<a><b><c></c></a>");
+        parser.next();
+        parser.next();
+        assertThrows(MalFormedException.class, parser::skipElement);
+    }
+
+    /** Test that copied elements yield the same events as the original ones. */
+    @Test
+    @DisplayName("Test copying elements")
+    public void testCopyElement() throws Exception {
+        final String element =
+                "<wpt lat=\"1\" q='say \"hi\"' e=\"&amp;\"><!-- <x> --><name>A &lt; B</name>"
+                        + "<sym/><desc>x<b>y</b></desc></wpt>";
+        final PullParser parser = new PullParser("<gpx>" + element + "<wpt/><end/></gpx>");
+        parser.next();
+        parser.next();
+
+        final StringBuilder copy = new StringBuilder();
+        parser.copyElement(copy);
+        assertEquals(XmlEvent.END_ELEMENT, parser.getEvent());
+        assertEquals("wpt", parser.getName());
+        assertEquals(1, parser.getDepth());
+        parser.next();
+        parser.copyElement(copy);
+        assertEquals(XmlEvent.START_ELEMENT, parser.next());
+        assertEquals("end", parser.getName());
+
+        final PullParser expected = new PullParser(element + "<wpt/>");
+        final PullParser actual = new PullParser(copy.toString());
+        XmlEvent event;
+        do {
+            event = expected.next();
+            assertEquals(event, actual.next());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getRawText(), actual.getRawText());
+            assertEquals(expected.getAttributeCount(), actual.getAttributeCount());
+            for (int i = 0; i < expected.getAttributeCount(); i++) {
+                assertEquals(expected.getAttributeValue(i), actual.getAttributeValue(i));
+            }
+        } while (event != XmlEvent.END_DOCUMENT);
+    }
+
+    /** Test that malformed data is detected. */
+    @Test
+    @DisplayName("Test malformed data")
+    public void testMalformed() {
+        assertThrows(MalFormedException.class, () -> consume("<a><b></a></b>"));
+        assertThrows(MalFormedException.class, () -> consume("<a></ab>"));
+        assertThrows(MalFormedException.class, () -> consume("<a>text"));
+        assertThrows(MalFormedException.class, () -> consume("text<a></a>"));
+        assertThrows(MalFormedException.class, () -> consume("<a b=c></a>"));
+    }
+
+    /**
+     * Read all events of the given document.
+     *
+     * @param document The document to parse.
+     * @throws Exception The document could not be parsed.
+     */
+    private static void consume(final String document) throws Exception {
+        final PullParser parser = new PullParser(document);
+        while (parser.next() != XmlEvent.END_DOCUMENT) {
+            // Just read the events.
+        }
+    }
+
+    /** Test that the names are shared instances for both kinds of buffers. */
+    @Test
+    @DisplayName("Test sharing the names")
+    public void testSharedNames() throws Exception {
+        final StringBuilder document = new StringBuilder("<gpx>");
+        for (int i = 0; i < 100; i++) {
+            document.append("<wpt lat=\"1\"><x").append(i).append(" lat=\"2\" /><näme /></wpt>");
+        }
+        document.append("</gpx>");
+
+        final PullParser[] parsers = {
+            new PullParser(document.toString()),
+            new PullParser(ByteBuffer.wrap(document.toString().getBytes(StandardCharsets.UTF_8)))
+        };
+        for (final PullParser parser : parsers) {
+            String unknownName = null;
+            String lastName = null;
+            XmlEvent event;
+            while ((event = parser.next()) != XmlEvent.END_DOCUMENT) {
+                if (event != XmlEvent.START_ELEMENT) {
+                    continue;
+                }
+                final String name = parser.getName();
+                if (name.equals("wpt")) {
+                    // Known names are the same instances as the literals.
+                    assertSame("wpt", name);
+                    assertSame("lat", parser.getAttributeName(0));
+                } else if (name.equals("näme")) {
+                    if (unknownName == null) {
+                        unknownName = name;
+                    }
+                    assertSame(unknownName, name);
+                } else if (!name.equals("gpx")) {
+                    assertSame("lat", parser.getAttributeName(0));
+                    assertFalse(name.equals(lastName));
+                    lastName = name;
+                }
+            }
+            assertEquals("x99", lastName);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the UTF-8 byte writer. */
+public class Utf8ByteWriteAbstractionTest {
+
+    /** Test that the encoding matches the charset encoder for all characters. */
+    @Test
+    @DisplayName("Test encoding like the charset encoder")
+    public void testEncoding() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+            text.append((char) i);
+        }
+        text.append("😀 \uD83D x \uDE00 \uD83D");
+        final String string = text.toString();
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final Utf8ByteWriteAbstraction writer = new Utf8ByteWriteAbstraction(outputStream, true);
+        // Write twice to cross the buffer boundaries at other positions.
+        writer.append(string).append("a").append(string);
+        writer.flush();
+
+        assertArrayEquals(
+                (string + "a" + string).getBytes(StandardCharsets.UTF_8),
+                outputStream.toByteArray());
+    }
+
+    /** Test the indentation, the tags and appending in-memory buffers. */
+    @Test
+    @DisplayName("Test indentation and tags")
+    public void testTags() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final BufferWriteAbstraction writer = new Utf8ByteWriteAbstraction(outputStream, true);
+        final BufferWriteAbstraction buffer = writer.createBuffer();
+        buffer.appendIndentation(1).appendStartTag("näme").append(">");
+        buffer.appendEscaped("Tom & Jerry").appendEndTag("näme");
+        writer.appendStartTag("wpt").append(">\n").append(buffer).appendEndTag("wpt");
+        writer.appendIndentation(200).append("x");
+        writer.flush();
+
+        final StringBuilder expected =
+                new StringBuilder("<wpt>\n  <näme>Tom &amp; Jerry</näme>\n</wpt>\n");
+        for (int i = 0; i < 400; i++) {
+            expected.append(' ');
+        }
+        expected.append('x');
+        assertEquals(
+                expected.toString(),
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+        final BufferWriteAbstraction compact = new Utf8ByteWriteAbstraction(false);
+        compact.appendIndentation(3).appendStartTag("a").append("/>");
+        assertEquals("<a/>", compact.toString());
+    }
+}
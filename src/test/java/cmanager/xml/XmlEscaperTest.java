@@ -0,0 +1,86 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+import java.time.Duration;
+import org.apache.commons.text.StringEscapeUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the XML escaper. */
+public class XmlEscaperTest {
+
+    /** Test that escaping matches Apache Commons Text for all characters. */
+    @Test
+    @DisplayName("Test escaping like Apache Commons Text")
+    public void testEscape() {
+        for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+            final String text = "a" + (char) i + "b";
+            assertEquals(StringEscapeUtils.escapeXml11(text), XmlEscaper.escape(text));
+        }
+
+        final String[] texts = {
+            "", "Tom & Jerry's <Cache> \"1\"", "😀", "\uD83D", "\uDE00\uD83D", "x\uD83D"
+        };
+        for (final String text : texts) {
+            assertEquals(StringEscapeUtils.escapeXml11(text), XmlEscaper.escape(text));
+        }
+    }
+
+    /** Test that unescaping matches Apache Commons Text, including invalid references. */
+    @Test
+    @DisplayName("Test unescaping like Apache Commons Text")
+    public void testUnescape() {
+        final String[] texts = {
+            "&quot;&amp;&lt;&gt;&apos;",
+            "&amp;amp;",
+            "&#65;&#x42;&#X43;",
+            "&#x1F600;",
+            "&#;",
+            "&#x;",
+            "&#12a;",
+            "&#99999999999;",
+            "&#5",
+            "&nbsp;",
+            "&",
+            "a &",
+            "&#",
+            "&#x",
+            "Tom & Jerry",
+        };
+        for (final String text : texts) {
+            assertEquals(StringEscapeUtils.unescapeXml(text), XmlEscaper.unescape(text), text);
+        }
+
+        for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+            final String text = "&#" + i + ";&#x" + Integer.toHexString(i) + ";";
+            assertEquals(StringEscapeUtils.unescapeXml(text), XmlEscaper.unescape(text));
+        }
+    }
+
+    /** Test that texts without anything to replace are returned unchanged. */
+    @Test
+    @DisplayName("Test returning plain texts unchanged")
+    public void testPlainText() {
+        final String text = "GC2ABCD Äpfel 2011-06-04T00:00:00Z 😀";
+        assertSame(text, XmlEscaper.escape(text));
+        assertSame(text, XmlEscaper.unescape(text));
+    }
+
+    /** Test the performance of escaping and unescaping typical GPX texts. */
+    @Test
+    @DisplayName("Test the performance of escaping and unescaping")
+    public void testPerformance() {
+        final String[] texts = {"GC2ABCD", "48.123456", "Tom & Jerry's Cache", "Traditional Cache"};
+        assertTimeout(
+                Duration.ofSeconds(10),
+                () -> {
+                    for (int i = 0; i < 1_000_000; i++) {
+                        final String text = texts[i % texts.length];
+                        XmlEscaper.unescape(XmlEscaper.escape(text));
+                    }
+                });
+    }
+}
@@ -0,0 +1,93 @@
+package cmanager.xml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Tests for the streaming XML writer. */
+public class XmlWriterTest {
+
+    /** Test that the streaming output matches the output of the shrunk element tree. */
+    @Test
+    @DisplayName("Test writing elements like the element tree")
+    public void testMatchesElementTree() throws Throwable {
+        final Element root = new Element();
+        final Element gpx = new Element("gpx");
+        gpx.add(new XmlAttribute("version", "1.0"));
+        root.add(gpx);
+        final Element waypoint = new Element("wpt");
+        waypoint.add(new XmlAttribute("lat", 1.5));
+        waypoint.add(new XmlAttribute("archived", false));
+        waypoint.add(new Element("name", "Tom & Jerry <3"));
+        waypoint.add(new Element("empty", (String) null));
+        final Element attributes = new Element("attributes");
+        attributes.add(new Element("nested"));
+        waypoint.add(attributes);
+        final Element attribute = new Element("attribute");
+        attribute.add(new XmlAttribute("id", 12));
+        attribute.add(new XmlAttribute("missing", (String) null));
+        waypoint.add(attribute);
+        waypoint.add(new Element("premium", true));
+        gpx.add(waypoint);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Parser.xmlToBuffer(root, expected);
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final XmlWriter writer = new XmlWriter(actual);
+        writer.writeDeclaration();
+        writer.startElement("gpx").attribute("version", "1.0");
+        writer.startElement("wpt").attribute("lat", 1.5).attribute("archived", false);
+        writer.element("name", "Tom & Jerry <3");
+        writer.element("empty", (String) null);
+        writer.startElement("attributes");
+        writer.startElement("nested").endElement();
+        writer.endElement();
+        writer.startElement("attribute")
+                .attribute("id", 12)
+                .attribute("missing", (String) null)
+                .endElement();
+        writer.element("premium", true);
+        writer.endElement();
+        writer.endElement();
+        writer.flush();
+
+        assertEquals(
+                new String(expected.toByteArray(), StandardCharsets.UTF_8),
+                new String(actual.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /** Test that the compact output matches the compact output of the element tree. */
+    @Test
+    @DisplayName("Test writing without indentation")
+    public void testCompact() throws Throwable {
+        final Element root = new Element();
+        final Element gpx = new Element("gpx");
+        final Element waypoint = new Element("wpt");
+        waypoint.add(new XmlAttribute("lat", 1.5));
+        waypoint.add(new Element("name", "GC1"));
+        gpx.add(waypoint);
+        root.add(gpx);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Parser.xmlToCompactBuffer(root, expected);
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final XmlWriter writer = new XmlWriter(actual, false);
+        writer.writeDeclaration();
+        writer.startElement("gpx");
+        writer.startElement("wpt").attribute("lat", 1.5);
+        writer.element("name", "GC1");
+        writer.endElement();
+        writer.endElement();
+        writer.flush();
+
+        final String result = new String(actual.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(new String(expected.toByteArray(), StandardCharsets.UTF_8), result);
+        assertEquals(
+                "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n<gpx>\n"
+                        + "<wpt lat=\"1.5\">\n<name>GC1</name>\n</wpt>\n</gpx>\n",
+                result);
+    }
+}